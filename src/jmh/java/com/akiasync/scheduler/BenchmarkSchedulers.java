@@ -0,0 +1,46 @@
+package com.akiasync.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+final class BenchmarkSchedulers {
+    private BenchmarkSchedulers() {
+    }
+
+    static SchedulerConfig config(int workers, int coordinatorBatchSize) {
+        return new SchedulerConfig(workers, 65_536, 1_024, coordinatorBatchSize, 8, 2_000);
+    }
+
+    static RedisTaskScheduler start(SchedulerConfig config) {
+        RedisTaskScheduler scheduler = new RedisTaskScheduler("Aki-Bench", config, failure -> {
+            throw new IllegalStateException("Scheduler failure during benchmark", failure);
+        });
+        scheduler.start();
+        return scheduler;
+    }
+
+    static void awaitSuccess(List<CompletableFuture<TaskTreeResult>> completions) {
+        for (CompletableFuture<TaskTreeResult> completion : completions) {
+            awaitSuccess(completion);
+        }
+    }
+
+    static TaskTreeResult awaitSuccess(CompletableFuture<TaskTreeResult> completion) {
+        TaskTreeResult result;
+        try {
+            result = completion.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(interrupted);
+        } catch (ExecutionException | TimeoutException failure) {
+            throw new IllegalStateException(failure);
+        }
+        if (!result.successful()) {
+            throw new IllegalStateException("Benchmark tree did not succeed: " + result);
+        }
+        return result;
+    }
+}
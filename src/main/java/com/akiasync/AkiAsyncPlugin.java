@@ -6,6 +6,7 @@ import com.akiasync.lag.LagProfilerService;
 import com.akiasync.mixin.BridgeManager;
 import com.akiasync.scheduler.AkiScheduler;
 import com.akiasync.scheduler.SchedulerConfig;
+import com.akiasync.scheduler.TickClock;
 import io.papermc.paper.plugin.lifecycle.event.types.LifecycleEvents;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -13,12 +14,13 @@ import org.bukkit.plugin.java.JavaPlugin;
 public final class AkiAsyncPlugin extends JavaPlugin {
     private final LagProfilerService lagProfiler = new LagProfilerService();
     private final DataPackService dataPackService = new DataPackService();
-    private final AkiAsyncBridge bridge = new AkiAsyncBridge(lagProfiler, dataPackService);
+    private final TickClock tickClock = new TickClock();
+    private final AkiAsyncBridge bridge = new AkiAsyncBridge(lagProfiler, dataPackService, tickClock);
     private AkiScheduler scheduler;
 
     @Override
     public void onEnable() {
-        scheduler = new AkiScheduler(this, SchedulerConfig.defaults());
+        scheduler = new AkiScheduler(this, SchedulerConfig.defaults(), tickClock);
         scheduler.start();
         getLifecycleManager().registerEventHandler(LifecycleEvents.COMMANDS, event -> event.registrar().register(
                 "akiasync",
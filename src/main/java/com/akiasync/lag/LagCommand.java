@@ -4,8 +4,14 @@ import com.akiasync.AkiAsyncBridge;
 import com.akiasync.datapack.DataPackRecord;
 import com.akiasync.datapack.DataPackService;
 import com.akiasync.scheduler.AkiScheduler;
+import com.akiasync.scheduler.CompletionMode;
+import com.akiasync.scheduler.ComputeMode;
+import com.akiasync.scheduler.LatencyBreakdown;
+import com.akiasync.scheduler.LatencySnapshot;
+import com.akiasync.scheduler.PluginShareSnapshot;
 import com.akiasync.scheduler.SchedulerSnapshot;
 import com.akiasync.scheduler.SchedulerState;
+import com.akiasync.scheduler.StuckTaskSnapshot;
 import io.papermc.paper.command.brigadier.BasicCommand;
 import io.papermc.paper.command.brigadier.CommandSourceStack;
 import net.kyori.adventure.text.Component;
@@ -13,8 +19,10 @@ import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.CommandSender;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 public final class LagCommand implements BasicCommand {
@@ -51,6 +59,8 @@ public final class LagCommand implements BasicCommand {
             }
             if (args.length == 1 || args[1].equalsIgnoreCase("status")) {
                 sendSchedulerStatus(sender);
+            } else if (args[1].equalsIgnoreCase("latency")) {
+                sendSchedulerLatency(sender, args);
             } else {
                 sendHelp(sender);
             }
@@ -104,7 +114,11 @@ public final class LagCommand implements BasicCommand {
                     .toList();
         }
         if (args.length == 2 && args[0].equalsIgnoreCase("scheduler")) {
-            return "status".startsWith(args[1].toLowerCase(Locale.ROOT)) ? List.of("status") : List.of();
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return List.of("status", "latency").stream().filter(value -> value.startsWith(prefix)).toList();
+        }
+        if (args.length == 3 && args[0].equalsIgnoreCase("scheduler") && args[1].equalsIgnoreCase("latency")) {
+            return List.of("5", "10", "20");
         }
         if (args.length == 2 && args[0].equalsIgnoreCase("datapack")) {
             return "status".startsWith(args[1].toLowerCase(Locale.ROOT)) ? List.of("status") : List.of();
@@ -183,25 +197,125 @@ public final class LagCommand implements BasicCommand {
                 "Aki-Async 调度器 " + snapshot.state() + " / generation " + snapshot.generation(),
                 stateColor
         ));
+        String computeMode = (snapshot.computeMode() == ComputeMode.WORK_STEALING
+                ? "work-stealing，窃取 " + snapshot.stolenTasks()
+                : "共享队列")
+                + (snapshot.completionMode() == CompletionMode.WORKER ? "，worker 推进" : "，协调线程推进");
         sender.sendMessage(Component.text(
                 "忙碌工作线程 " + snapshot.busyWorkers() + "/" + snapshot.workerThreads()
+                        + (snapshot.maxWorkerThreads() > snapshot.workerThreads()
+                        ? "（自适应上限 " + snapshot.maxWorkerThreads() + "）"
+                        : "")
+                        + "（" + computeMode + "）"
                         + "，活动任务树 " + snapshot.activeTrees()
-                        + "，owner 提交 " + snapshot.pendingOwnerTasks(),
+                        + "（等待容量 " + snapshot.waitingTrees() + "）"
+                        + "，owner 提交 " + snapshot.pendingOwnerTasks()
+                        + "（跨 tick 结转 " + snapshot.carriedCommits()
+                        + "，累计 " + snapshot.deferredCommits() + "）",
                 NamedTextColor.GRAY
         ));
         sender.sendMessage(Component.text(
                 "任务容量 " + snapshot.outstandingTasks() + "/" + snapshot.taskCapacity()
                         + "，计算队列 " + snapshot.queuedComputeTasks()
-                        + "，控制队列 " + snapshot.coordinatorBacklog(),
+                        + "，I/O 通道 " + snapshot.busyBlockingTasks() + " 运行/"
+                        + snapshot.queuedBlockingTasks() + " 等待"
+                        + "，控制队列 " + snapshot.coordinatorBacklog()
+                        + "，低优先级暂缓 " + snapshot.deferredTasks() + "（累计 " + snapshot.throttledTasks() + "）"
+                        + "，优先级老化 " + snapshot.agedTasks()
+                        + (snapshot.averageTickNanos() < 0L
+                        ? ""
+                        : "，平均 tick " + millis(snapshot.averageTickNanos()) + " ms"),
                 NamedTextColor.GRAY
         ));
         sender.sendMessage(Component.text(
                 "任务树 提交/完成/失败/取消/拒绝 "
                         + snapshot.submittedTrees() + "/" + snapshot.completedTrees() + "/"
                         + snapshot.failedTrees() + "/" + snapshot.cancelledTrees() + "/"
-                        + snapshot.rejectedTrees(),
+                        + snapshot.rejectedTrees()
+                        + "，错过截止 " + snapshot.deadlineMisses()
+                        + "，执行超时 " + snapshot.timedOutTasks()
+                        + "，失败重试 " + snapshot.retriedTasks()
+                        + "，定时提交 " + snapshot.scheduledSubmissions()
+                        + "，结果缓存 " + snapshot.cachedResults() + " 条（命中 " + snapshot.cacheHits()
+                        + "，合并执行 " + snapshot.sharedExecutions() + "）"
+                        + "，分叉子任务 " + snapshot.forkedTasks(),
                 NamedTextColor.DARK_GRAY
         ));
+        for (PluginShareSnapshot plugin : snapshot.plugins()) {
+            sender.sendMessage(Component.text(
+                    "  " + plugin.plugin() + "：任务 " + plugin.outstandingTasks() + "/" + plugin.taskQuota()
+                            + "，权重 " + plugin.weight()
+                            + "，任务树 提交/完成/拒绝 " + plugin.submittedTrees() + "/" + plugin.completedTrees()
+                            + "/" + plugin.rejectedTrees()
+                            + "，已完成任务 " + plugin.finishedTasks(),
+                    NamedTextColor.DARK_GRAY
+            ));
+        }
+        List<StuckTaskSnapshot> stuckTasks = snapshot.stuckTasks();
+        for (int index = stuckTasks.size() - 1; index >= 0; index--) {
+            StuckTaskSnapshot stuck = stuckTasks.get(index);
+            sender.sendMessage(Component.text(
+                    "  超时节点 " + stuck.node() + "（任务树 #" + stuck.treeId() + "）在 " + stuck.thread()
+                            + " 上运行 " + millis(stuck.runningNanos()) + " ms，上限 "
+                            + millis(stuck.timeoutNanos()) + " ms"
+                            + (stuck.stack().isEmpty() ? "" : "，位于 " + stuck.stack().get(0)),
+                    NamedTextColor.RED
+            ));
+        }
+    }
+
+    private void sendSchedulerLatency(CommandSender sender, String[] args) {
+        int limit = 10;
+        if (args.length >= 3) {
+            try {
+                limit = Math.max(1, Math.min(20, Integer.parseInt(args[2])));
+            } catch (NumberFormatException exception) {
+                sender.sendMessage(Component.text("数量必须是整数。", NamedTextColor.RED));
+                return;
+            }
+        }
+
+        SchedulerSnapshot snapshot = scheduler.snapshot();
+        sender.sendMessage(Component.text(
+                "Aki-Async 调度器延迟（p50/p95/p99/max ms）：排队 / 执行 / 提交",
+                NamedTextColor.AQUA
+        ));
+        snapshot.priorityLatency().forEach((priority, latency) -> {
+            if (latency.execution().count() > 0) {
+                sender.sendMessage(Component.text(
+                        priority + " ×" + latency.execution().count() + "  " + latencyLine(latency),
+                        NamedTextColor.GRAY
+                ));
+            }
+        });
+        List<Map.Entry<String, LatencyBreakdown>> nodes = snapshot.nodeLatency().entrySet().stream()
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, LatencyBreakdown> entry) -> entry.getValue().execution().p99Nanos()
+                ).reversed())
+                .limit(limit)
+                .toList();
+        if (nodes.isEmpty()) {
+            sender.sendMessage(Component.text("尚无已完成的计算节点。", NamedTextColor.GREEN));
+            return;
+        }
+        sender.sendMessage(Component.text("执行 p99 最慢的节点", NamedTextColor.AQUA));
+        for (Map.Entry<String, LatencyBreakdown> node : nodes) {
+            sender.sendMessage(Component.text(
+                    "  " + node.getKey() + " ×" + node.getValue().execution().count() + "  "
+                            + latencyLine(node.getValue()),
+                    NamedTextColor.DARK_GRAY
+            ));
+        }
+    }
+
+    private static String latencyLine(LatencyBreakdown latency) {
+        return percentiles(latency.queueWait()) + " / " + percentiles(latency.execution()) + " / "
+                + percentiles(latency.commit());
+    }
+
+    private static String percentiles(LatencySnapshot latency) {
+        return millis(latency.p50Nanos()) + "/" + millis(latency.p95Nanos()) + "/"
+                + millis(latency.p99Nanos()) + "/" + millis(latency.maxNanos());
     }
 
     private void sendStatus(CommandSender sender) {
@@ -385,6 +499,7 @@ public final class LagCommand implements BasicCommand {
         sender.sendMessage(Component.text("/akiasync lag arm [ticks]", NamedTextColor.AQUA));
         sender.sendMessage(Component.text("/akiasync datapack status", NamedTextColor.AQUA));
         sender.sendMessage(Component.text("/akiasync scheduler status", NamedTextColor.AQUA));
+        sender.sendMessage(Component.text("/akiasync scheduler latency [count]", NamedTextColor.AQUA));
     }
 
     private static String primaryCause(LagTickRecord tick) {
@@ -0,0 +1,178 @@
+package com.akiasync.scheduler;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retry backoffs and delayed or periodic tree submissions of one scheduler. The {@link TimingWheel} is only
+ * touched on the coordinator; everything else may be called from any thread.
+ */
+final class CoordinatorTimers {
+    private final TimingWheel wheel = new TimingWheel(System.nanoTime());
+    private final Set<CompletableFuture<?>> delayedSubmissions = ConcurrentHashMap.newKeySet();
+    private final Set<PeriodicSubmission> periodicSubmissions = ConcurrentHashMap.newKeySet();
+    private final Consumer<Runnable> coordinator;
+    private final Consumer<Runnable> launcher;
+    private final LongSupplier generation;
+    private final LongPredicate current;
+    private final Consumer<Throwable> failures;
+
+    /**
+     * @param coordinator runs a command on the coordinator
+     * @param launcher    queues a submission for a worker
+     * @param current     whether the scheduler is running in the given generation
+     */
+    CoordinatorTimers(
+            Consumer<Runnable> coordinator,
+            Consumer<Runnable> launcher,
+            LongSupplier generation,
+            LongPredicate current,
+            Consumer<Throwable> failures
+    ) {
+        this.coordinator = coordinator;
+        this.launcher = launcher;
+        this.generation = generation;
+        this.current = current;
+        this.failures = failures;
+    }
+
+    /**
+     * Runs {@code action} on the coordinator once {@code dueNanos} has passed.
+     */
+    void schedule(long dueNanos, Runnable action) {
+        coordinator.accept(() -> wheel.schedule(dueNanos, action));
+    }
+
+    <H> CompletableFuture<H> submitDelayed(Supplier<? extends H> submission, long delayNanos) {
+        Objects.requireNonNull(submission, "submission");
+        if (delayNanos < 0L) {
+            throw new IllegalArgumentException("delay must not be negative");
+        }
+        CompletableFuture<H> submitted = new CompletableFuture<>();
+        long scheduledGeneration = generation.getAsLong();
+        long dueNanos = System.nanoTime() + delayNanos;
+        // Registered before the state check, so a stop either cancels the future or is seen by this call.
+        delayedSubmissions.add(submitted);
+        submitted.whenComplete((handle, failure) -> delayedSubmissions.remove(submitted));
+        if (!current.test(scheduledGeneration)) {
+            submitted.completeExceptionally(new RejectedExecutionException("Scheduler is not running"));
+            return submitted;
+        }
+        AtomicReference<TimingWheel.Timer> timer = new AtomicReference<>();
+        coordinator.accept(() -> timer.set(wheel.schedule(dueNanos, () -> {
+            if (submitted.isDone()) {
+                return;
+            }
+            if (!current.test(scheduledGeneration)) {
+                submitted.completeExceptionally(new CancellationException("Scheduler generation changed"));
+                return;
+            }
+            try {
+                launcher.accept(() -> {
+                    try {
+                        submitted.complete(submission.get());
+                    } catch (Throwable failure) {
+                        submitted.completeExceptionally(failure);
+                    }
+                });
+            } catch (RuntimeException | Error failure) {
+                submitted.completeExceptionally(failure);
+            }
+        })));
+        // Posted after the timer, so the coordinator has always scheduled it by the time it cancels it.
+        submitted.whenComplete((handle, failure) -> {
+            if (submitted.isCancelled()) {
+                coordinator.accept(() -> wheel.cancel(timer.get()));
+            }
+        });
+        return submitted;
+    }
+
+    PeriodicSubmission submitPeriodic(
+            Supplier<? extends CompletionStage<TaskTreeResult>> launch,
+            long initialDelayNanos,
+            long periodNanos
+    ) {
+        Objects.requireNonNull(launch, "launch");
+        if (initialDelayNanos < 0L) {
+            throw new IllegalArgumentException("initialDelay must not be negative");
+        }
+        if (periodNanos < TimingWheel.TICK_NANOS) {
+            throw new IllegalArgumentException("period must be at least one millisecond");
+        }
+        PeriodicSubmission periodic = new PeriodicSubmission(
+                launch,
+                System.nanoTime() + initialDelayNanos,
+                periodNanos,
+                generation.getAsLong()
+        );
+        periodicSubmissions.add(periodic);
+        if (!current.test(periodic.generation())) {
+            periodic.cancel();
+            periodicSubmissions.remove(periodic);
+            throw new RejectedExecutionException("Scheduler is not running");
+        }
+        schedule(periodic.dueNanos(), () -> fire(periodic));
+        return periodic;
+    }
+
+    /**
+     * Fires the due timers. This and {@link #nanosUntilNext} run on the coordinator only.
+     */
+    void advance(long nowNanos) {
+        if (!wheel.isEmpty()) {
+            wheel.advance(nowNanos, failures);
+        }
+    }
+
+    long nanosUntilNext(long nowNanos) {
+        return wheel.nanosUntilNext(nowNanos);
+    }
+
+    int pendingSubmissions() {
+        return delayedSubmissions.size() + periodicSubmissions.size();
+    }
+
+    /**
+     * Fails every delayed submission that has not started yet and stops every periodic one.
+     */
+    void cancelSubmissions() {
+        for (CompletableFuture<?> delayed : delayedSubmissions) {
+            delayed.completeExceptionally(new CancellationException("Scheduler stopped before the tree was submitted"));
+        }
+        for (PeriodicSubmission periodic : periodicSubmissions) {
+            periodic.cancel();
+        }
+        periodicSubmissions.clear();
+    }
+
+    private void fire(PeriodicSubmission periodic) {
+        if (periodic.isCancelled() || !current.test(periodic.generation())) {
+            periodic.cancel();
+            periodicSubmissions.remove(periodic);
+            return;
+        }
+        if (periodic.tryStart()) {
+            try {
+                launcher.accept(periodic::launch);
+            } catch (RuntimeException | Error failure) {
+                periodic.cancel();
+                periodicSubmissions.remove(periodic);
+                failures.accept(failure);
+                return;
+            }
+        }
+        periodic.advance(System.nanoTime());
+        wheel.schedule(periodic.dueNanos(), () -> fire(periodic));
+    }
+}
@@ -0,0 +1,179 @@
+package com.akiasync.scheduler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Chunked parallel map and reduce over a collection inside one node, built on {@link TaskExecutionContext#fork}.
+ * Chunks are sized for the active workers and for the measured per-element cost of earlier fan-outs of the same
+ * node name, so cheap elements are not split into chunks that cost less than forking them.
+ */
+final class FanOut {
+    /**
+     * Each worker gets several chunks so a slow chunk does not leave the others idle at the end.
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+    /**
+     * Smallest amount of work worth a fork of its own.
+     */
+    private static final long MIN_CHUNK_NANOS = 50_000L;
+
+    private FanOut() {
+    }
+
+    static void requireChunkSize(int chunkSize) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("chunkSize must not be negative");
+        }
+    }
+
+    /**
+     * Maps every element into one preallocated array and returns a fixed-size list view of it in source order.
+     */
+    @SuppressWarnings("unchecked")
+    static <E, R> List<R> map(
+            Collection<? extends E> source,
+            int chunkSize,
+            TaskNode.Continuation<? super E, ? extends R> mapper,
+            TaskExecutionContext context
+    ) throws Exception {
+        List<? extends E> elements = indexed(source);
+        int size = elements.size();
+        Object[] results = new Object[size];
+        int chunk = chunkLength(size, chunkSize, context);
+        forEachChunk(size, chunk, context, (index, from, to, forked) -> {
+            for (int element = from; element < to; element++) {
+                results[element] = mapper.run(elements.get(element), forked);
+            }
+        });
+        return (List<R>) Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Folds each chunk from {@code identity} with {@code accumulator} and combines the chunk results in source
+     * order, so {@code combiner} need not be commutative. {@code identity} is shared by every chunk and must
+     * not be mutated.
+     */
+    @SuppressWarnings("unchecked")
+    static <E, A> A reduce(
+            Collection<? extends E> source,
+            int chunkSize,
+            A identity,
+            BiFunction<A, ? super E, A> accumulator,
+            BinaryOperator<A> combiner,
+            TaskExecutionContext context
+    ) throws Exception {
+        List<? extends E> elements = indexed(source);
+        int size = elements.size();
+        if (size == 0) {
+            return identity;
+        }
+        int chunk = chunkLength(size, chunkSize, context);
+        Object[] partials = new Object[(size + chunk - 1) / chunk];
+        forEachChunk(size, chunk, context, (index, from, to, forked) -> {
+            A partial = identity;
+            for (int element = from; element < to; element++) {
+                partial = accumulator.apply(partial, elements.get(element));
+            }
+            partials[index] = partial;
+        });
+        A result = (A) partials[0];
+        for (int index = 1; index < partials.length; index++) {
+            result = combiner.apply(result, (A) partials[index]);
+        }
+        return result;
+    }
+
+    static int chunkLength(int size, int requested, TaskExecutionContext context) {
+        if (requested > 0) {
+            return requested;
+        }
+        int balanced = ceilDiv(size, Math.max(1, context.parallelism()) * CHUNKS_PER_WORKER);
+        long elementNanos = context.elementNanos();
+        if (elementNanos <= 0L) {
+            return Math.max(1, balanced);
+        }
+        long worthForking = Math.min(size, (MIN_CHUNK_NANOS + elementNanos - 1L) / elementNanos);
+        return (int) Math.max(1L, Math.max(balanced, worthForking));
+    }
+
+    /**
+     * Forks every chunk but the last, runs the last one here and joins the rest newest first, so chunks no
+     * other worker has picked up are run by this thread without a queue round trip. Every chunk is joined
+     * before the first failure is rethrown.
+     */
+    private static void forEachChunk(int size, int chunk, TaskExecutionContext context, Chunk body)
+            throws Exception {
+        int chunks = size == 0 ? 0 : (size - 1) / chunk + 1;
+        LongAdder busyNanos = new LongAdder();
+        TaskFork<?>[] forks = new TaskFork<?>[Math.max(0, chunks - 1)];
+        for (int index = 0; index < forks.length; index++) {
+            int chunkIndex = index;
+            int from = index * chunk;
+            forks[index] = context.fork(forked -> {
+                runChunk(body, chunkIndex, from, from + chunk, forked, busyNanos);
+                return null;
+            });
+        }
+        Exception failure = null;
+        if (chunks > 0) {
+            try {
+                runChunk(body, chunks - 1, (chunks - 1) * chunk, size, context, busyNanos);
+            } catch (Exception exception) {
+                failure = exception;
+            }
+        }
+        for (int index = forks.length - 1; index >= 0; index--) {
+            try {
+                forks[index].join();
+            } catch (Exception exception) {
+                if (failure == null) {
+                    failure = exception;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (size > 0) {
+            context.recordElementNanos(Math.max(1L, busyNanos.sum() / size));
+        }
+    }
+
+    private static void runChunk(
+            Chunk body,
+            int index,
+            int from,
+            int to,
+            TaskExecutionContext context,
+            LongAdder busyNanos
+    ) throws Exception {
+        context.checkCancellation();
+        long started = System.nanoTime();
+        body.run(index, from, to, context);
+        busyNanos.add(System.nanoTime() - started);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<? extends E> indexed(Collection<? extends E> source) {
+        if (source instanceof List<? extends E> list && source instanceof RandomAccess) {
+            return list;
+        }
+        return (List<? extends E>) Arrays.asList(source.toArray());
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    @FunctionalInterface
+    private interface Chunk {
+        void run(int index, int from, int to, TaskExecutionContext context) throws Exception;
+    }
+}
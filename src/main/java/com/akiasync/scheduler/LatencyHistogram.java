@@ -0,0 +1,85 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations. Values are counted in microsecond units with sixteen linear
+ * sub-buckets per power of two, so any reported percentile is within about 6% of the recorded value.
+ */
+final class LatencyHistogram {
+    private static final int UNIT_SHIFT = 10;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Highest tracked power of two in units; longer durations, over a minute, share the last bucket.
+     */
+    private static final int MAX_EXPONENT = 26;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.getAndIncrement(bucket(value >>> UNIT_SHIFT));
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0L;
+        for (int index = 0; index < BUCKETS; index++) {
+            copy[index] = counts.get(index);
+            total += copy[index];
+        }
+        long maxNanos = max.get();
+        return new LatencySnapshot(
+                total,
+                percentile(copy, total, 0.50, maxNanos),
+                percentile(copy, total, 0.95, maxNanos),
+                percentile(copy, total, 0.99, maxNanos),
+                maxNanos
+        );
+    }
+
+    private static long percentile(long[] counts, long total, double quantile, long maxNanos) {
+        if (total == 0L) {
+            return 0L;
+        }
+        long target = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0L;
+        for (int index = 0; index < counts.length; index++) {
+            seen += counts[index];
+            if (seen >= target) {
+                // Report the bucket's upper edge, never more than the largest value actually recorded.
+                long upper = index + 1 < counts.length ? (lowerBound(index + 1) << UNIT_SHIFT) - 1L : maxNanos;
+                return Math.min(upper, maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    private static int bucket(long units) {
+        if (units < SUB_BUCKETS) {
+            return (int) units;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(units);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((units >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,105 @@
+package com.akiasync.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How often a failed node runs again before its failure skips its descendants. A retry keeps the tree's task
+ * reservation and the results of the node's parents, so only the failed step runs again. Instances are
+ * immutable; every method returns a new policy.
+ */
+public final class RetryPolicy {
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final List<Class<? extends Throwable>> retryOn;
+
+    private RetryPolicy(
+            int maxAttempts,
+            long initialBackoffNanos,
+            long maxBackoffNanos,
+            List<Class<? extends Throwable>> retryOn
+    ) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.retryOn = retryOn;
+    }
+
+    /**
+     * Runs a failed node up to {@code maxAttempts} times in total, the first run included, retrying right away
+     * after any {@link Exception}. Errors are never retried.
+     */
+    public static RetryPolicy attempts(int maxAttempts) {
+        if (maxAttempts < 2) {
+            throw new IllegalArgumentException("maxAttempts must be at least 2");
+        }
+        return new RetryPolicy(maxAttempts, 0L, 0L, List.of());
+    }
+
+    /**
+     * Waits {@code initialDelay} before the first retry and twice as long before each further one, up to
+     * {@code maxDelay}. A waiting node holds no worker.
+     */
+    public RetryPolicy backoff(long initialDelay, long maxDelay, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (initialDelay < 1L) {
+            throw new IllegalArgumentException("initialDelay must be positive");
+        }
+        if (maxDelay < initialDelay) {
+            throw new IllegalArgumentException("maxDelay must not be below initialDelay");
+        }
+        return new RetryPolicy(maxAttempts, unit.toNanos(initialDelay), unit.toNanos(maxDelay), retryOn);
+    }
+
+    /**
+     * Retries only failures of {@code type} or its subtypes; further calls add more types. Every other failure
+     * fails the node on the first attempt.
+     */
+    public RetryPolicy retryOn(Class<? extends Throwable> type) {
+        Objects.requireNonNull(type, "type");
+        List<Class<? extends Throwable>> types = new ArrayList<>(retryOn);
+        types.add(type);
+        return new RetryPolicy(maxAttempts, initialBackoffNanos, maxBackoffNanos, List.copyOf(types));
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a node that has run {@code attempts} times and last failed with {@code failure} runs again.
+     */
+    boolean retries(Throwable failure, int attempts) {
+        if (attempts >= maxAttempts) {
+            return false;
+        }
+        if (retryOn.isEmpty()) {
+            return failure instanceof Exception;
+        }
+        for (Class<? extends Throwable> type : retryOn) {
+            if (type.isInstance(failure)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Delay before the {@code retry}-th retry, counting from one.
+     */
+    long backoffNanos(int retry) {
+        if (initialBackoffNanos == 0L) {
+            return 0L;
+        }
+        int shift = Math.min(retry - 1, 62);
+        return initialBackoffNanos > maxBackoffNanos >> shift ? maxBackoffNanos : initialBackoffNanos << shift;
+    }
+
+    @Override
+    public String toString() {
+        return maxAttempts + " attempts, backoff " + initialBackoffNanos + "-" + maxBackoffNanos + "ns";
+    }
+}
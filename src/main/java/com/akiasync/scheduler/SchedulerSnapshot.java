@@ -1,20 +1,48 @@
 package com.akiasync.scheduler;
 
+import java.util.List;
+import java.util.Map;
+
 public record SchedulerSnapshot(
         SchedulerState state,
         long generation,
+        ComputeMode computeMode,
+        CompletionMode completionMode,
         int workerThreads,
+        int maxWorkerThreads,
+        long averageTickNanos,
         int busyWorkers,
         int activeTrees,
+        int waitingTrees,
         int outstandingTasks,
         int taskCapacity,
         long queuedComputeTasks,
+        long stolenTasks,
+        int busyBlockingTasks,
+        int queuedBlockingTasks,
+        int deferredTasks,
+        long throttledTasks,
+        long agedTasks,
         int coordinatorBacklog,
         int pendingOwnerTasks,
+        int carriedCommits,
+        long deferredCommits,
         long submittedTrees,
         long completedTrees,
         long failedTrees,
         long cancelledTrees,
-        long rejectedTrees
+        long rejectedTrees,
+        long deadlineMisses,
+        long timedOutTasks,
+        long retriedTasks,
+        int scheduledSubmissions,
+        int cachedResults,
+        long cacheHits,
+        long sharedExecutions,
+        long forkedTasks,
+        List<StuckTaskSnapshot> stuckTasks,
+        List<PluginShareSnapshot> plugins,
+        Map<SchedulerPriority, LatencyBreakdown> priorityLatency,
+        Map<String, LatencyBreakdown> nodeLatency
 ) {
 }
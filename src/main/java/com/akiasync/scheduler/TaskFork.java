@@ -0,0 +1,115 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A subtask forked by a running node through {@link TaskExecutionContext#fork(Action)}. It runs on whichever
+ * worker takes it first, or on the joining thread if nobody has started it by the time {@link #join()} is
+ * called.
+ */
+public final class TaskFork<R> {
+    /**
+     * How long a joining worker with nothing to help with waits before it looks at the queues again.
+     */
+    private static final long HELP_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final Action<? extends R> action;
+    private final TaskExecutionContext context;
+    private final Runnable release;
+    private final BooleanSupplier helper;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+    private volatile Runnable dequeue;
+
+    /**
+     * @param release returns the fork's capacity reservation, or {@code null} when it holds none
+     * @param helper  runs one other queued task on the calling thread, returning whether there was one
+     */
+    TaskFork(Action<? extends R> action, TaskExecutionContext context, Runnable release, BooleanSupplier helper) {
+        this.action = action;
+        this.context = context;
+        this.release = release;
+        this.helper = helper;
+    }
+
+    /**
+     * Waits for the fork and returns its result, rethrowing its failure as is. A fork that is still queued runs
+     * here; otherwise the calling worker runs other queued tasks until the fork is done rather than idling.
+     * Throws {@link java.util.concurrent.CancellationException} when the tree was cancelled first.
+     */
+    public R join() throws Exception {
+        if (claimed.compareAndSet(false, true)) {
+            Runnable queued = dequeue;
+            if (queued != null) {
+                queued.run();
+            }
+            execute();
+        }
+        while (!result.isDone()) {
+            if (helper.getAsBoolean()) {
+                continue;
+            }
+            try {
+                result.get(HELP_RETRY_NANOS, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException ignored) {
+                // Either look for more work to help with or report the failure below.
+            }
+        }
+        try {
+            return result.join();
+        } catch (CompletionException wrapped) {
+            Throwable cause = wrapped.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw wrapped;
+        }
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Entry point of the queued task; does nothing if {@link #join()} already ran the fork.
+     */
+    void run() {
+        if (claimed.compareAndSet(false, true)) {
+            execute();
+        }
+    }
+
+    /**
+     * Registers how to drop the queued task once the joining thread runs the fork itself.
+     */
+    void dequeue(Runnable nextDequeue) {
+        dequeue = nextDequeue;
+    }
+
+    private void execute() {
+        try {
+            context.checkCancellation();
+            result.complete(action.run(context));
+        } catch (Throwable failure) {
+            result.completeExceptionally(failure);
+        } finally {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Action<R> {
+        R run(TaskExecutionContext context) throws Exception;
+    }
+}
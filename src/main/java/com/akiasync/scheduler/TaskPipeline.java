@@ -0,0 +1,190 @@
+package com.akiasync.scheduler;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The owner-thread snapshot, tree computation, validation and owner-thread commit sequence as one reusable
+ * object. Submit it through {@link AkiScheduler#submit(TaskPipeline, org.bukkit.World, int, int, Object)} or
+ * {@link AkiScheduler#submit(TaskPipeline, org.bukkit.entity.Entity, Object)}; the snapshot and the commit run on
+ * that target's owner thread, the computation on the workers. A commit is skipped and the run completes with a
+ * {@link CancellationException} when the scheduler generation changed since the snapshot, the target is gone
+ * or the {@link CommitStage#verify verify} check rejects the snapshot.
+ *
+ * @param <I> input of each run, passed to the snapshot stage
+ * @param <R> value returned by the commit stage
+ */
+public final class TaskPipeline<I, R> {
+    private final String name;
+    private final Stages<I, ?, ?, R> stages;
+    private final LongAdder submittedRuns = new LongAdder();
+    private final LongAdder committedRuns = new LongAdder();
+    private final LongAdder discardedRuns = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private final LatencyHistogram snapshotLatency = new LatencyHistogram();
+    private final LatencyHistogram computeLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    private TaskPipeline(String name, Stages<I, ?, ?, R> stages) {
+        this.name = name;
+        this.stages = stages;
+    }
+
+    /**
+     * Starts a pipeline whose snapshot stage copies what the computation needs from live state. It runs on the
+     * target's owner thread and must return an immutable value.
+     */
+    public static <I, S> Builder<I, S> builder(String name, Function<? super I, ? extends S> snapshot) {
+        Objects.requireNonNull(name, "name");
+        return new Builder<>(name, Objects.requireNonNull(snapshot, "snapshot"));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public PipelineStats stats() {
+        return new PipelineStats(
+                name,
+                submittedRuns.sum(),
+                committedRuns.sum(),
+                discardedRuns.sum(),
+                failedRuns.sum(),
+                snapshotLatency.snapshot(),
+                computeLatency.snapshot(),
+                commitLatency.snapshot(),
+                totalLatency.snapshot()
+        );
+    }
+
+    /**
+     * @param owner runs a stage on the target's owner thread
+     * @param targetValid checked on the owner thread before the commit; false discards the run
+     */
+    CompletableFuture<R> run(I input, RedisTaskScheduler scheduler, Owner owner, BooleanSupplier targetValid) {
+        submittedRuns.increment();
+        long started = System.nanoTime();
+        CompletableFuture<R> result = stages.run(this, input, scheduler, owner, targetValid);
+        result.whenComplete((value, failure) -> {
+            totalLatency.record(System.nanoTime() - started);
+            if (failure == null) {
+                committedRuns.increment();
+            } else if (unwrap(failure) instanceof CancellationException) {
+                discardedRuns.increment();
+            } else {
+                failedRuns.increment();
+            }
+        });
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @FunctionalInterface
+    interface Owner {
+        CompletableFuture<Object> run(Supplier<Object> stage);
+    }
+
+    public static final class Builder<I, S> {
+        private final String name;
+        private final Function<? super I, ? extends S> snapshot;
+
+        private Builder(String name, Function<? super I, ? extends S> snapshot) {
+            this.name = name;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Computes on the workers by running {@code template} with the snapshot as its input.
+         */
+        public <C> CommitStage<I, S, C> compute(TaskTreeTemplate<S, C> template) {
+            return new CommitStage<>(name, snapshot, Objects.requireNonNull(template, "template"));
+        }
+    }
+
+    public static final class CommitStage<I, S, C> {
+        private final String name;
+        private final Function<? super I, ? extends S> snapshot;
+        private final TaskTreeTemplate<S, C> template;
+        private Predicate<? super S> verify = ignored -> true;
+
+        private CommitStage(String name, Function<? super I, ? extends S> snapshot, TaskTreeTemplate<S, C> template) {
+            this.name = name;
+            this.snapshot = snapshot;
+            this.template = template;
+        }
+
+        /**
+         * Re-checks live state against the snapshot on the owner thread right before the commit, for example
+         * that a block still has the type that was captured. Returning false discards the run.
+         */
+        public CommitStage<I, S, C> verify(Predicate<? super S> stillValid) {
+            verify = Objects.requireNonNull(stillValid, "stillValid");
+            return this;
+        }
+
+        /**
+         * Applies the computed result on the owner thread and completes the pipeline.
+         */
+        public <R> TaskPipeline<I, R> commit(BiFunction<? super S, ? super C, ? extends R> commit) {
+            Objects.requireNonNull(commit, "commit");
+            return new TaskPipeline<>(name, new Stages<>(snapshot, template, verify, commit));
+        }
+    }
+
+    private record Captured<S>(S snapshot, long generation) {
+    }
+
+    private record Stages<I, S, C, R>(
+            Function<? super I, ? extends S> snapshot,
+            TaskTreeTemplate<S, C> template,
+            Predicate<? super S> verify,
+            BiFunction<? super S, ? super C, ? extends R> commit
+    ) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<R> run(
+                TaskPipeline<I, R> pipeline,
+                I input,
+                RedisTaskScheduler scheduler,
+                Owner owner,
+                BooleanSupplier targetValid
+        ) {
+            // Both owner hops go straight to the target's scheduler and the tree is submitted from the thread
+            // that took the snapshot, so a run costs exactly two owner tasks and one tree.
+            return owner.run(() -> {
+                long started = System.nanoTime();
+                Captured<S> captured = new Captured<>(snapshot.apply(input), scheduler.generation());
+                pipeline.snapshotLatency.record(System.nanoTime() - started);
+                return captured;
+            }).thenCompose(value -> {
+                Captured<S> captured = (Captured<S>) value;
+                long submitted = System.nanoTime();
+                return scheduler.submit(template, captured.snapshot()).result().thenCompose(computed -> {
+                    pipeline.computeLatency.record(System.nanoTime() - submitted);
+                    return owner.run(() -> {
+                        if (!scheduler.isGenerationCurrent(captured.generation())
+                                || !targetValid.getAsBoolean()
+                                || !verify.test(captured.snapshot())) {
+                            throw new CancellationException("Pipeline '" + pipeline.name + "' snapshot is stale");
+                        }
+                        long started = System.nanoTime();
+                        R result = commit.apply(captured.snapshot(), computed);
+                        pipeline.commitLatency.record(System.nanoTime() - started);
+                        return result;
+                    });
+                });
+            }).thenApply(value -> (R) value);
+        }
+    }
+}
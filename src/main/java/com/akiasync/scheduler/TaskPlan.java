@@ -0,0 +1,213 @@
+package com.akiasync.scheduler;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable, validated shape of a task graph. Nodes are addressed by ordinal; ordinal 0 is the root and every
+ * node's children are stored contiguously in one flat array.
+ */
+final class TaskPlan {
+    static final int NO_OUTPUT = -1;
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final String[] names;
+    private final SchedulerPriority[] priorities;
+    private final int[] parentCounts;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final Step[] steps;
+    private final TaskDeadline[] deadlines;
+    private final CacheKey[] cacheKeys;
+    private final boolean[] blocking;
+    private final long[] timeouts;
+    private final RetryPolicy[] retryPolicies;
+    private final TaskDeadline treeDeadline;
+    private final int output;
+
+    TaskPlan(
+            String[] names,
+            SchedulerPriority[] priorities,
+            int[] parentCounts,
+            int[][] childLists,
+            Step[] steps,
+            TaskDeadline[] deadlines,
+            CacheKey[] cacheKeys,
+            boolean[] blocking,
+            long[] timeouts,
+            RetryPolicy[] retryPolicies,
+            TaskDeadline treeDeadline,
+            int output
+    ) {
+        int size = names.length;
+        if (size == 0 || priorities.length != size || parentCounts.length != size || childLists.length != size
+                || steps.length != size || deadlines.length != size || cacheKeys.length != size
+                || blocking.length != size || timeouts.length != size || retryPolicies.length != size) {
+            throw new IllegalArgumentException("Task plan arrays must be non-empty and equally sized");
+        }
+        if (parentCounts[0] != 0) {
+            throw new IllegalArgumentException("Task plan root must not have parents");
+        }
+        if (output != NO_OUTPUT && (output < 0 || output >= size)) {
+            throw new IllegalArgumentException("Task plan output is out of range");
+        }
+        this.names = names;
+        this.priorities = priorities;
+        this.parentCounts = parentCounts;
+        this.steps = steps;
+        this.treeDeadline = treeDeadline;
+        this.output = output;
+        boolean anyDeadline = false;
+        for (TaskDeadline deadline : deadlines) {
+            anyDeadline |= deadline != null;
+        }
+        this.deadlines = anyDeadline ? deadlines : null;
+        boolean anyCacheKey = false;
+        for (CacheKey cacheKey : cacheKeys) {
+            anyCacheKey |= cacheKey != null;
+        }
+        this.cacheKeys = anyCacheKey ? cacheKeys : null;
+        boolean anyBlocking = false;
+        for (boolean flag : blocking) {
+            anyBlocking |= flag;
+        }
+        this.blocking = anyBlocking ? blocking : null;
+        boolean anyTimeout = false;
+        for (long timeout : timeouts) {
+            anyTimeout |= timeout > 0L;
+        }
+        this.timeouts = anyTimeout ? timeouts : null;
+        boolean anyRetryPolicy = false;
+        for (RetryPolicy retryPolicy : retryPolicies) {
+            anyRetryPolicy |= retryPolicy != null;
+        }
+        this.retryPolicies = anyRetryPolicy ? retryPolicies : null;
+
+        childOffsets = new int[size + 1];
+        int edges = 0;
+        for (int node = 0; node < size; node++) {
+            childOffsets[node] = edges;
+            edges += childLists[node].length;
+        }
+        childOffsets[size] = edges;
+        children = new int[edges];
+        for (int node = 0; node < size; node++) {
+            System.arraycopy(childLists[node], 0, children, childOffsets[node], childLists[node].length);
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    int edgeCount() {
+        return children.length;
+    }
+
+    String name(int node) {
+        return names[node];
+    }
+
+    SchedulerPriority priority(int node) {
+        return priorities[node];
+    }
+
+    int parentCount(int node) {
+        return parentCounts[node];
+    }
+
+    int[] parentCounts() {
+        return parentCounts;
+    }
+
+    int firstChild(int node) {
+        return childOffsets[node];
+    }
+
+    int endChild(int node) {
+        return childOffsets[node + 1];
+    }
+
+    int child(int edge) {
+        return children[edge];
+    }
+
+    Step step(int node) {
+        return steps[node];
+    }
+
+    int output() {
+        return output;
+    }
+
+    /**
+     * Single-flight key of {@code node}, or {@code null} when its result is never shared.
+     */
+    CacheKey cacheKey(int node) {
+        return cacheKeys == null ? null : cacheKeys[node];
+    }
+
+    /**
+     * Whether {@code node} runs on the blocking I/O lane instead of a compute worker.
+     */
+    boolean blocking(int node) {
+        return blocking != null && blocking[node];
+    }
+
+    boolean hasTimeouts() {
+        return timeouts != null;
+    }
+
+    /**
+     * Execution time limit of {@code node} in nanoseconds, or {@code 0} when it uses the scheduler default.
+     */
+    long timeoutNanos(int node) {
+        return timeouts == null ? 0L : timeouts[node];
+    }
+
+    boolean hasRetryPolicies() {
+        return retryPolicies != null;
+    }
+
+    /**
+     * Retry policy of {@code node}, or {@code null} when its first failure is final.
+     */
+    RetryPolicy retryPolicy(int node) {
+        return retryPolicies == null ? null : retryPolicies[node];
+    }
+
+    /**
+     * Resolves node and tree deadlines for a run submitted at {@code submittedNanos}. Each entry is the time
+     * from submission by which the node must finish, the earlier of its own and the tree's deadline, or
+     * {@link #NO_DEADLINE}. Returns {@code null} when the plan has no deadlines at all.
+     */
+    long[] deadlineOffsets(long submittedNanos, TickClock tickClock) {
+        if (deadlines == null && treeDeadline == null) {
+            return null;
+        }
+        long tree = treeDeadline == null
+                ? NO_DEADLINE
+                : Math.max(0L, treeDeadline.resolve(submittedNanos, tickClock) - submittedNanos);
+        long[] offsets = new long[names.length];
+        for (int node = 0; node < offsets.length; node++) {
+            TaskDeadline deadline = deadlines == null ? null : deadlines[node];
+            long own = deadline == null
+                    ? NO_DEADLINE
+                    : Math.max(0L, deadline.resolve(submittedNanos, tickClock) - submittedNanos);
+            offsets[node] = Math.min(own, tree);
+        }
+        return offsets;
+    }
+
+    /**
+     * Resolves a keyed node's cache key and key generation for one run. A {@code null} key runs the node
+     * uncached.
+     */
+    record CacheKey(Function<TreeRun, ?> key, ToLongFunction<TreeRun> generation) {
+    }
+
+    @FunctionalInterface
+    interface Step {
+        Object run(TreeRun run, TaskExecutionContext context) throws Exception;
+    }
+}
@@ -0,0 +1,121 @@
+package com.akiasync.scheduler;
+
+import ca.spottedleaf.concurrentutil.collection.MultiThreadedQueue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight results of keyed nodes, shared across trees. The first node to claim a name, key and generation
+ * computes it; identical nodes that start meanwhile follow its future instead of running, and up to
+ * {@code capacity} finished results are kept, oldest evicted first, until a newer generation of the key
+ * replaces them.
+ */
+final class TaskResultCache {
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final MultiThreadedQueue<Entry> retained = new MultiThreadedQueue<>();
+    private final AtomicInteger retainedCount = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder sharedExecutions = new LongAdder();
+    private final int capacity;
+
+    TaskResultCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Claims {@code key} at {@code generation}. An owned claim must compute the value and pass it to
+     * {@link #complete} or {@link #fail}; any other claim follows the owner's {@link Entry#result()}. A request
+     * for a generation older than the cached one is computed privately and never shared.
+     */
+    Claim claim(String node, Object key, long generation) {
+        Key slot = new Key(node, key);
+        Entry created = new Entry(slot, generation);
+        Entry current = entries.compute(slot, (ignored, existing) ->
+                existing == null || existing.generation < generation ? created : existing);
+        if (current == created) {
+            created.installed = true;
+            return new Claim(created, true);
+        }
+        if (current.generation != generation) {
+            return new Claim(created, true);
+        }
+        if (current.result.isDone()) {
+            hits.increment();
+        } else {
+            sharedExecutions.increment();
+        }
+        return new Claim(current, false);
+    }
+
+    void complete(Entry entry, Object value) {
+        entry.result.complete(value);
+        if (!entry.installed) {
+            return;
+        }
+        if (capacity == 0) {
+            entries.remove(entry.key, entry);
+            return;
+        }
+        retained.add(entry);
+        if (retainedCount.incrementAndGet() > capacity) {
+            Entry oldest = retained.poll();
+            if (oldest != null) {
+                retainedCount.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    /**
+     * Drops a failed or cancelled computation so the next claim runs it again; followers see {@code failure}.
+     */
+    void fail(Entry entry, Throwable failure) {
+        if (entry.installed) {
+            entries.remove(entry.key, entry);
+        }
+        entry.result.completeExceptionally(failure);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long sharedExecutions() {
+        return sharedExecutions.sum();
+    }
+
+    void clear() {
+        entries.clear();
+        retained.clear();
+        retainedCount.set(0);
+    }
+
+    record Key(String node, Object key) {
+    }
+
+    record Claim(Entry entry, boolean owned) {
+    }
+
+    static final class Entry {
+        private final Key key;
+        private final long generation;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private boolean installed;
+
+        private Entry(Key key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        CompletableFuture<Object> result() {
+            return result;
+        }
+    }
+}
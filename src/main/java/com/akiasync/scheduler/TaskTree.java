@@ -2,16 +2,20 @@ package com.akiasync.scheduler;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public final class TaskTree<T> {
     private final Seal seal;
     private final TaskNode<T> root;
+    private TaskDeadline deadline;
 
     private TaskTree(String name, SchedulerPriority priority, RootAction<T> action) {
         seal = new Seal();
-        root = new TaskNode<>(seal, name, priority, action::run);
+        root = new TaskNode<>(seal, name, priority, 0, (run, context) -> action.run(context));
     }
 
     public static <T> TaskTree<T> root(String name, SchedulerPriority priority, RootAction<T> action) {
@@ -22,6 +26,63 @@ public final class TaskTree<T> {
         return root;
     }
 
+    /**
+     * Requires the whole tree to finish by {@code deadline}, counted from submission. Every node inherits the
+     * tree deadline unless its own is earlier; see {@link TaskNode#deadline(TaskDeadline)}.
+     */
+    public TaskTree<T> deadline(TaskDeadline deadline) {
+        Objects.requireNonNull(deadline, "deadline");
+        synchronized (seal) {
+            seal.requireOpen();
+            this.deadline = deadline;
+            return this;
+        }
+    }
+
+    /**
+     * Adds a fan-in node that runs once both parents have succeeded. If either parent fails or is skipped,
+     * the join and its descendants are skipped.
+     */
+    public <A, B, R> TaskNode<R> join(
+            String name,
+            SchedulerPriority priority,
+            TaskNode<A> first,
+            TaskNode<B> second,
+            JoinAction<? super A, ? super B, ? extends R> action
+    ) {
+        Objects.requireNonNull(action, "action");
+        return attachJoin(
+                name,
+                priority,
+                List.of(first, second),
+                (run, context) -> action.run(first.valueIn(run), second.valueIn(run), context)
+        );
+    }
+
+    /**
+     * Adds a fan-in node over any number of parents; results are passed in the order the parents were given.
+     */
+    public <P, R> TaskNode<R> joinAll(
+            String name,
+            SchedulerPriority priority,
+            List<? extends TaskNode<? extends P>> parents,
+            JoinAllAction<P, ? extends R> action
+    ) {
+        Objects.requireNonNull(action, "action");
+        List<TaskNode<? extends P>> ordered = List.copyOf(parents);
+        return attachJoin(name, priority, ordered, (run, context) -> {
+            List<P> values = new ArrayList<>(ordered.size());
+            for (TaskNode<? extends P> parent : ordered) {
+                values.add(parent.valueIn(run));
+            }
+            return action.run(Collections.unmodifiableList(values), context);
+        });
+    }
+
+    /**
+     * Seals the tree and compiles it into a plan. Ordinals follow a depth-first walk from the root, so the
+     * root is always ordinal 0.
+     */
     PreparedTree<T> prepare() {
         synchronized (seal) {
             seal.close();
@@ -30,13 +91,90 @@ public final class TaskTree<T> {
             pending.push(root);
             while (!pending.isEmpty()) {
                 TaskNode<?> node = pending.pop();
+                if (node.ordinal() >= 0) {
+                    continue;
+                }
+                node.ordinal(nodes.size());
                 nodes.add(node);
                 List<TaskNode<?>> children = node.children();
                 for (int index = children.size() - 1; index >= 0; index--) {
                     pending.push(children.get(index));
                 }
             }
-            return new PreparedTree<>(root, List.copyOf(nodes));
+
+            int size = nodes.size();
+            TaskNode<?>[] ordered = nodes.toArray(new TaskNode<?>[0]);
+            String[] names = new String[size];
+            SchedulerPriority[] priorities = new SchedulerPriority[size];
+            int[] parentCounts = new int[size];
+            int[][] childLists = new int[size][];
+            TaskPlan.Step[] steps = new TaskPlan.Step[size];
+            TaskDeadline[] deadlines = new TaskDeadline[size];
+            TaskPlan.CacheKey[] cacheKeys = new TaskPlan.CacheKey[size];
+            boolean[] blocking = new boolean[size];
+            long[] timeouts = new long[size];
+            RetryPolicy[] retryPolicies = new RetryPolicy[size];
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                TaskNode<?> node = ordered[ordinal];
+                names[ordinal] = node.name();
+                priorities[ordinal] = node.priority();
+                parentCounts[ordinal] = node.parentCount();
+                steps[ordinal] = node.computation();
+                deadlines[ordinal] = node.deadline();
+                cacheKeys[ordinal] = node.cacheKey();
+                blocking[ordinal] = node.isBlocking();
+                timeouts[ordinal] = node.timeoutNanos();
+                retryPolicies[ordinal] = node.retryPolicy();
+                List<TaskNode<?>> children = node.children();
+                childLists[ordinal] = new int[children.size()];
+                for (int index = 0; index < children.size(); index++) {
+                    childLists[ordinal][index] = children.get(index).ordinal();
+                }
+            }
+            TaskPlan plan = new TaskPlan(
+                    names,
+                    priorities,
+                    parentCounts,
+                    childLists,
+                    steps,
+                    deadlines,
+                    cacheKeys,
+                    blocking,
+                    timeouts,
+                    retryPolicies,
+                    deadline,
+                    TaskPlan.NO_OUTPUT
+            );
+            return new PreparedTree<>(root, ordered, plan);
+        }
+    }
+
+    private <R> TaskNode<R> attachJoin(
+            String name,
+            SchedulerPriority priority,
+            List<? extends TaskNode<?>> parents,
+            TaskNode.Computation<R> computation
+    ) {
+        if (parents.size() < 2) {
+            throw new IllegalArgumentException("A join needs at least two parents");
+        }
+        synchronized (seal) {
+            seal.requireOpen();
+            Set<TaskNode<?>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (TaskNode<?> parent : parents) {
+                Objects.requireNonNull(parent, "parent");
+                if (parent.seal() != seal) {
+                    throw new IllegalArgumentException("Join parent '" + parent.name() + "' belongs to another tree");
+                }
+                if (!distinct.add(parent)) {
+                    throw new IllegalArgumentException("Join parent '" + parent.name() + "' is listed twice");
+                }
+            }
+            TaskNode<R> join = new TaskNode<>(seal, name, priority, parents.size(), computation);
+            for (TaskNode<?> parent : parents) {
+                parent.addChild(join);
+            }
+            return join;
         }
     }
 
@@ -45,7 +183,17 @@ public final class TaskTree<T> {
         T run(TaskExecutionContext context) throws Exception;
     }
 
-    record PreparedTree<T>(TaskNode<T> root, List<TaskNode<?>> nodes) {
+    @FunctionalInterface
+    public interface JoinAction<A, B, R> {
+        R run(A firstResult, B secondResult, TaskExecutionContext context) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface JoinAllAction<P, R> {
+        R run(List<P> parentResults, TaskExecutionContext context) throws Exception;
+    }
+
+    record PreparedTree<T>(TaskNode<T> root, TaskNode<?>[] nodes, TaskPlan plan) {
     }
 
     static final class Seal {
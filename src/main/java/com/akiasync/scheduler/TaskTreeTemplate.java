@@ -0,0 +1,411 @@
+package com.akiasync.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A task graph that is built and validated once and then submitted any number of times with a fresh input.
+ * Unlike {@link TaskTree}, a submission allocates no per-node objects; the run only exposes the result of the
+ * output node chosen in {@link Builder#build(Node)}.
+ *
+ * @param <I> input passed to the root of every run
+ * @param <R> result of the output node
+ */
+public final class TaskTreeTemplate<I, R> {
+    private final TaskPlan plan;
+
+    private TaskTreeTemplate(TaskPlan plan) {
+        this.plan = plan;
+    }
+
+    public static <I, T> Builder<I, T> builder(
+            String rootName,
+            SchedulerPriority rootPriority,
+            RootAction<? super I, ? extends T> action
+    ) {
+        return new Builder<>(rootName, rootPriority, Objects.requireNonNull(action, "action"));
+    }
+
+    public int size() {
+        return plan.size();
+    }
+
+    public String outputName() {
+        return plan.name(plan.output());
+    }
+
+    TaskPlan plan() {
+        return plan;
+    }
+
+    public static final class Builder<I, T> {
+        private final List<Node<?>> nodes = new ArrayList<>();
+        private final Node<T> root;
+        private TaskDeadline deadline;
+        private boolean built;
+
+        private Builder(String rootName, SchedulerPriority rootPriority, RootAction<? super I, ? extends T> action) {
+            root = add(rootName, rootPriority, 0, (run, context) -> action.run(input(run), context));
+        }
+
+        public Node<T> root() {
+            return root;
+        }
+
+        /**
+         * Requires every run to finish by {@code deadline}, counted from its submission, like
+         * {@link TaskTree#deadline}.
+         */
+        public synchronized Builder<I, T> deadline(TaskDeadline nextDeadline) {
+            Objects.requireNonNull(nextDeadline, "deadline");
+            requireOpen();
+            deadline = nextDeadline;
+            return this;
+        }
+
+        /**
+         * Adds a fan-in node that runs once both parents have succeeded, like {@link TaskTree#join}.
+         */
+        public <A, B, R> Node<R> join(
+                String name,
+                SchedulerPriority priority,
+                Node<A> first,
+                Node<B> second,
+                TaskTree.JoinAction<? super A, ? super B, ? extends R> action
+        ) {
+            Objects.requireNonNull(action, "action");
+            return attachJoin(
+                    name,
+                    priority,
+                    List.of(first, second),
+                    (run, context) -> action.run(first.valueIn(run), second.valueIn(run), context)
+            );
+        }
+
+        /**
+         * Adds a fan-in node over any number of parents, like {@link TaskTree#joinAll}.
+         */
+        public <P, R> Node<R> joinAll(
+                String name,
+                SchedulerPriority priority,
+                List<? extends Node<? extends P>> parents,
+                TaskTree.JoinAllAction<P, ? extends R> action
+        ) {
+            Objects.requireNonNull(action, "action");
+            List<Node<? extends P>> ordered = List.copyOf(parents);
+            return attachJoin(name, priority, ordered, (run, context) -> {
+                List<P> values = new ArrayList<>(ordered.size());
+                for (Node<? extends P> parent : ordered) {
+                    values.add(parent.valueIn(run));
+                }
+                return action.run(Collections.unmodifiableList(values), context);
+            });
+        }
+
+        /**
+         * Compiles the graph. The builder cannot be changed afterwards.
+         */
+        public <R> TaskTreeTemplate<I, R> build(Node<R> output) {
+            Objects.requireNonNull(output, "output");
+            synchronized (this) {
+                requireOpen();
+                if (output.owner != this) {
+                    throw new IllegalArgumentException("Output node '" + output.name + "' belongs to another template");
+                }
+                built = true;
+
+                int size = nodes.size();
+                String[] names = new String[size];
+                SchedulerPriority[] priorities = new SchedulerPriority[size];
+                int[] parentCounts = new int[size];
+                int[][] childLists = new int[size][];
+                TaskPlan.Step[] steps = new TaskPlan.Step[size];
+                TaskDeadline[] deadlines = new TaskDeadline[size];
+                TaskPlan.CacheKey[] cacheKeys = new TaskPlan.CacheKey[size];
+                boolean[] blocking = new boolean[size];
+                long[] timeouts = new long[size];
+                RetryPolicy[] retryPolicies = new RetryPolicy[size];
+                for (int ordinal = 0; ordinal < size; ordinal++) {
+                    Node<?> node = nodes.get(ordinal);
+                    names[ordinal] = node.name;
+                    priorities[ordinal] = node.priority;
+                    parentCounts[ordinal] = node.parentCount;
+                    steps[ordinal] = node.step;
+                    deadlines[ordinal] = node.deadline;
+                    cacheKeys[ordinal] = node.cacheKey;
+                    blocking[ordinal] = node.blocking;
+                    timeouts[ordinal] = node.timeoutNanos;
+                    retryPolicies[ordinal] = node.retryPolicy;
+                    childLists[ordinal] = new int[node.children.size()];
+                    for (int index = 0; index < node.children.size(); index++) {
+                        childLists[ordinal][index] = node.children.get(index).ordinal;
+                    }
+                }
+                return new TaskTreeTemplate<>(new TaskPlan(
+                        names,
+                        priorities,
+                        parentCounts,
+                        childLists,
+                        steps,
+                        deadlines,
+                        cacheKeys,
+                        blocking,
+                        timeouts,
+                        retryPolicies,
+                        deadline,
+                        output.ordinal
+                ));
+            }
+        }
+
+        private <R> Node<R> attachJoin(
+                String name,
+                SchedulerPriority priority,
+                List<? extends Node<?>> parents,
+                TaskPlan.Step step
+        ) {
+            if (parents.size() < 2) {
+                throw new IllegalArgumentException("A join needs at least two parents");
+            }
+            synchronized (this) {
+                requireOpen();
+                Set<Node<?>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (Node<?> parent : parents) {
+                    Objects.requireNonNull(parent, "parent");
+                    if (parent.owner != this) {
+                        throw new IllegalArgumentException(
+                                "Join parent '" + parent.name + "' belongs to another template"
+                        );
+                    }
+                    if (!distinct.add(parent)) {
+                        throw new IllegalArgumentException("Join parent '" + parent.name + "' is listed twice");
+                    }
+                }
+                Node<R> join = add(name, priority, parents.size(), step);
+                for (Node<?> parent : parents) {
+                    parent.children.add(join);
+                }
+                return join;
+            }
+        }
+
+        private synchronized <R> Node<R> add(
+                String name,
+                SchedulerPriority priority,
+                int parentCount,
+                TaskPlan.Step step
+        ) {
+            requireOpen();
+            // Creation order is a valid topological order: parents always exist before their children.
+            Node<R> node = new Node<>(this, nodes.size(), name, priority, parentCount, step);
+            nodes.add(node);
+            return node;
+        }
+
+        private void requireOpen() {
+            if (built) {
+                throw new IllegalStateException("Task tree template is already built");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <I> I input(TreeRun run) {
+            return (I) run.input();
+        }
+    }
+
+    public static final class Node<T> {
+        private final Builder<?, ?> owner;
+        private final int ordinal;
+        private final String name;
+        private final SchedulerPriority priority;
+        private final int parentCount;
+        private final TaskPlan.Step step;
+        private final List<Node<?>> children = new ArrayList<>();
+        private TaskDeadline deadline;
+        private TaskPlan.CacheKey cacheKey;
+        private boolean blocking;
+        private long timeoutNanos;
+        private RetryPolicy retryPolicy;
+
+        private Node(
+                Builder<?, ?> owner,
+                int ordinal,
+                String name,
+                SchedulerPriority priority,
+                int parentCount,
+                TaskPlan.Step step
+        ) {
+            this.owner = owner;
+            this.ordinal = ordinal;
+            this.name = TaskNode.requireName(name);
+            this.priority = Objects.requireNonNull(priority, "priority");
+            this.parentCount = parentCount;
+            this.step = step;
+        }
+
+        public <R> Node<R> then(
+                String childName,
+                SchedulerPriority childPriority,
+                TaskNode.Continuation<? super T, ? extends R> continuation
+        ) {
+            Objects.requireNonNull(continuation, "continuation");
+            synchronized (owner) {
+                Node<R> child = owner.add(
+                        childName,
+                        childPriority,
+                        1,
+                        (run, context) -> continuation.run(valueIn(run), context)
+                );
+                children.add(child);
+                return child;
+            }
+        }
+
+        /**
+         * Adds a child that maps a collection in parallel chunks, like {@link TaskNode#fanOut}.
+         */
+        public <E, R> Node<List<R>> fanOut(
+                String childName,
+                SchedulerPriority childPriority,
+                Function<? super T, ? extends Collection<? extends E>> elements,
+                int chunkSize,
+                TaskNode.Continuation<? super E, ? extends R> mapper
+        ) {
+            Objects.requireNonNull(elements, "elements");
+            Objects.requireNonNull(mapper, "mapper");
+            FanOut.requireChunkSize(chunkSize);
+            return then(
+                    childName,
+                    childPriority,
+                    (value, context) -> FanOut.map(elements.apply(value), chunkSize, mapper, context)
+            );
+        }
+
+        /**
+         * Adds a child that folds a collection in parallel chunks, like {@link TaskNode#reduce}.
+         */
+        public <E, A> Node<A> reduce(
+                String childName,
+                SchedulerPriority childPriority,
+                Function<? super T, ? extends Collection<? extends E>> elements,
+                int chunkSize,
+                A identity,
+                BiFunction<A, ? super E, A> accumulator,
+                BinaryOperator<A> combiner
+        ) {
+            Objects.requireNonNull(elements, "elements");
+            Objects.requireNonNull(accumulator, "accumulator");
+            Objects.requireNonNull(combiner, "combiner");
+            FanOut.requireChunkSize(chunkSize);
+            return then(
+                    childName,
+                    childPriority,
+                    (value, context) -> FanOut.reduce(
+                            elements.apply(value),
+                            chunkSize,
+                            identity,
+                            accumulator,
+                            combiner,
+                            context
+                    )
+            );
+        }
+
+        /**
+         * Requires this node to finish by {@code deadline} in every run, like {@link TaskNode#deadline}.
+         */
+        public Node<T> deadline(TaskDeadline nextDeadline) {
+            Objects.requireNonNull(nextDeadline, "deadline");
+            synchronized (owner) {
+                owner.requireOpen();
+                deadline = nextDeadline;
+                return this;
+            }
+        }
+
+        /**
+         * Shares this node's result across runs and trees like {@link TaskNode#cacheKey(Object, long)}, with the
+         * key and its generation derived from each run's input of type {@code I}, the template's input type. A
+         * {@code null} key runs that node uncached.
+         */
+        public <I> Node<T> cacheKey(Function<? super I, ?> key, ToLongFunction<? super I> generation) {
+            Objects.requireNonNull(key, "key");
+            Objects.requireNonNull(generation, "generation");
+            synchronized (owner) {
+                owner.requireOpen();
+                cacheKey = new TaskPlan.CacheKey(
+                        run -> key.apply(Builder.input(run)),
+                        run -> generation.applyAsLong(Builder.input(run))
+                );
+                return this;
+            }
+        }
+
+        /**
+         * Runs this node on the blocking I/O lane in every run, like {@link TaskNode#blocking()}.
+         */
+        public Node<T> blocking() {
+            synchronized (owner) {
+                owner.requireOpen();
+                blocking = true;
+                return this;
+            }
+        }
+
+        /**
+         * Limits how long this node may run once started, like {@link TaskNode#timeout(long, TimeUnit)}.
+         */
+        public Node<T> timeout(long timeout, TimeUnit unit) {
+            Objects.requireNonNull(unit, "unit");
+            if (timeout < 1L) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+            synchronized (owner) {
+                owner.requireOpen();
+                timeoutNanos = unit.toNanos(timeout);
+                return this;
+            }
+        }
+
+        /**
+         * Runs this node again when it fails, as {@code policy} allows, like {@link TaskNode#retry}.
+         */
+        public Node<T> retry(RetryPolicy policy) {
+            Objects.requireNonNull(policy, "policy");
+            synchronized (owner) {
+                owner.requireOpen();
+                retryPolicy = policy;
+                return this;
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public SchedulerPriority priority() {
+            return priority;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T valueIn(TreeRun run) {
+            return (T) run.value(ordinal);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RootAction<I, T> {
+        T run(I input, TaskExecutionContext context) throws Exception;
+    }
+}
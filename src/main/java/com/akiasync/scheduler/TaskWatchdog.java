@@ -0,0 +1,159 @@
+package com.akiasync.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Cancels the tree of every node that runs past its timeout. Its thread starts with the first tree that has a
+ * node timeout and parks without polling while no such tree is registered.
+ */
+final class TaskWatchdog {
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    /**
+     * Most recent timed-out nodes kept for {@link SchedulerSnapshot#stuckTasks()}.
+     */
+    private static final int MAX_STUCK_TASKS = 8;
+
+    private final Thread thread;
+    private final Collection<TreeRun> trees;
+    private final Consumer<TreeRun> abandon;
+    private final Consumer<Throwable> failures;
+    private final AtomicInteger watchedTrees = new AtomicInteger();
+    private final LongAdder timedOutTasks = new LongAdder();
+    private final ArrayDeque<StuckTaskSnapshot> stuckTasks = new ArrayDeque<>();
+    private boolean started;
+    private volatile boolean stopped;
+
+    /**
+     * @param trees   live view of the registered trees
+     * @param abandon cancels a tree from the watchdog thread
+     */
+    TaskWatchdog(String name, Collection<TreeRun> trees, Consumer<TreeRun> abandon, Consumer<Throwable> failures) {
+        this.trees = trees;
+        this.abandon = abandon;
+        this.failures = failures;
+        thread = new Thread(this::loop, name);
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((ignored, failure) -> failures.accept(failure));
+    }
+
+    /**
+     * Starts or wakes the watchdog for a tree with a node timeout; only the coordinator calls this.
+     */
+    void treeRegistered(TreeRun run) {
+        if (!run.isWatched() || watchedTrees.getAndIncrement() != 0) {
+            return;
+        }
+        if (started) {
+            LockSupport.unpark(thread);
+            return;
+        }
+        started = true;
+        thread.start();
+    }
+
+    void treeFinished(TreeRun run) {
+        if (run.isWatched()) {
+            watchedTrees.decrementAndGet();
+        }
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    long timedOutTasks() {
+        return timedOutTasks.sum();
+    }
+
+    List<StuckTaskSnapshot> stuckTasks() {
+        synchronized (stuckTasks) {
+            return List.copyOf(stuckTasks);
+        }
+    }
+
+    private void loop() {
+        while (!stopped) {
+            if (watchedTrees.get() == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            LockSupport.parkNanos(this, INTERVAL_NANOS);
+            try {
+                checkRunningNodes();
+            } catch (Throwable failure) {
+                failures.accept(failure);
+            }
+        }
+    }
+
+    /**
+     * Java cannot stop a thread safely, so a node that ignores cancellation keeps its worker until it returns;
+     * blocking nodes are interrupted, which ends most waits on I/O.
+     */
+    private void checkRunningNodes() {
+        long now = System.nanoTime();
+        for (TreeRun run : trees) {
+            if (!run.isWatched()) {
+                continue;
+            }
+            for (int node = 0, size = run.plan().size(); node < size; node++) {
+                Thread runner = run.runner(node);
+                if (runner == null) {
+                    continue;
+                }
+                long running = now - run.runningSince(node);
+                long timeout = run.timeoutNanos(node);
+                if (running <= timeout || !run.unwatch(node, runner)) {
+                    continue;
+                }
+                recordTimeout(run, node, runner, running, timeout, runner.getStackTrace());
+                run.requestCancellation();
+                abandon.accept(run);
+                if (run.plan().blocking(node)) {
+                    runner.interrupt();
+                }
+            }
+        }
+    }
+
+    private void recordTimeout(
+            TreeRun run,
+            int node,
+            Thread runner,
+            long runningNanos,
+            long timeoutNanos,
+            StackTraceElement[] stack
+    ) {
+        timedOutTasks.increment();
+        String name = run.plan().name(node);
+        StuckTaskSnapshot stuck = new StuckTaskSnapshot(
+                run.id(),
+                run.taskId(node),
+                name,
+                runner.getName(),
+                runningNanos,
+                timeoutNanos,
+                List.of(stack)
+        );
+        synchronized (stuckTasks) {
+            if (stuckTasks.size() == MAX_STUCK_TASKS) {
+                stuckTasks.removeFirst();
+            }
+            stuckTasks.addLast(stuck);
+        }
+        TimeoutException failure = new TimeoutException("Task '" + name + "' of tree " + run.id() + " ran for "
+                + TimeUnit.NANOSECONDS.toMillis(runningNanos) + " ms on " + runner.getName() + ", over its "
+                + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms timeout; its tree was cancelled");
+        failure.setStackTrace(stack);
+        failures.accept(failure);
+    }
+}
@@ -0,0 +1,103 @@
+package com.akiasync.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latest server tick timings, written by the server thread at the start and end of every tick and read by the
+ * scheduler.
+ */
+public final class TickClock {
+    public static final long TICK_BUDGET_NANOS = 50_000_000L;
+    private static final long STALE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile long lastTickNanos = -1L;
+    private volatile long averageTickNanos = -1L;
+    private volatile long recordedAtNanos;
+    private volatile long tickStartedNanos;
+    private volatile boolean inTick;
+    private final List<Runnable> tickEndListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Marks the start of a server tick; {@link #recordTick(long)} marks its end.
+     */
+    public void tickStarted() {
+        tickStartedNanos = System.nanoTime();
+        inTick = true;
+    }
+
+    public void recordTick(long wallNanos) {
+        inTick = false;
+        if (wallNanos < 0L) {
+            return;
+        }
+        long average = averageTickNanos;
+        // An exponential moving average over roughly the last eight ticks smooths single GC or save spikes.
+        averageTickNanos = average < 0L ? wallNanos : average + (wallNanos - average) / 8L;
+        lastTickNanos = wallNanos;
+        recordedAtNanos = System.nanoTime();
+        for (Runnable listener : tickEndListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Time the server thread has spent in the tick it is currently running, or {@code -1} between ticks and
+     * when the current tick has run for over a second, which means the server is stalled rather than busy.
+     */
+    public long currentTickNanos() {
+        if (!inTick) {
+            return -1L;
+        }
+        long elapsed = System.nanoTime() - tickStartedNanos;
+        return elapsed < STALE_AFTER_NANOS ? elapsed : -1L;
+    }
+
+    /**
+     * Registers a callback run on the server thread after every tick; it must return quickly.
+     */
+    void addTickEndListener(Runnable listener) {
+        tickEndListeners.add(listener);
+    }
+
+    void removeTickEndListener(Runnable listener) {
+        tickEndListeners.remove(listener);
+    }
+
+    /**
+     * Duration of the last tick, or {@code -1} when no tick finished within the last second.
+     */
+    public long lastTickNanos() {
+        return isFresh() ? lastTickNanos : -1L;
+    }
+
+    /**
+     * Smoothed tick duration, or {@code -1} when no tick finished within the last second.
+     */
+    public long averageTickNanos() {
+        return isFresh() ? averageTickNanos : -1L;
+    }
+
+    /**
+     * Estimates when the {@code ticks}-th tick boundary after {@code nowNanos} falls. Without fresh timings,
+     * ticks are assumed to start every {@link #TICK_BUDGET_NANOS} from now.
+     */
+    long tickBoundaryNanos(int ticks, long nowNanos) {
+        long boundary;
+        if (isFresh()) {
+            // The next tick starts once the last one has used its full budget, or right away if it overran.
+            boundary = recordedAtNanos + Math.max(0L, TICK_BUDGET_NANOS - lastTickNanos);
+            while (boundary - nowNanos <= 0L) {
+                boundary += TICK_BUDGET_NANOS;
+            }
+        } else {
+            boundary = nowNanos + TICK_BUDGET_NANOS;
+        }
+        return boundary + (ticks - 1L) * TICK_BUDGET_NANOS;
+    }
+
+    private boolean isFresh() {
+        return lastTickNanos >= 0L && System.nanoTime() - recordedAtNanos < STALE_AFTER_NANOS;
+    }
+}
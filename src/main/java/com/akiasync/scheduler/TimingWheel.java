@@ -0,0 +1,191 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel holding the coordinator's timers: retry backoffs and delayed or periodic tree
+ * submissions. Adding a timer and firing it cost constant time however many are pending; a timer further out
+ * than one lap of the lowest level waits in an upper level and moves down as its time approaches. Not
+ * thread-safe; only the coordinator uses it.
+ */
+final class TimingWheel {
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    /**
+     * Four levels of 64 one-millisecond slots span about 4.7 hours; later timers go round the top level again.
+     */
+    private static final int LEVELS = 4;
+
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    private final long originNanos;
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long nowNanos) {
+        originNanos = nowNanos;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Runs {@code action} during the first {@link #advance} at or after {@code dueNanos}, never earlier.
+     */
+    Timer schedule(long dueNanos, Runnable action) {
+        // Rounds up, so a timer fires at the first tick boundary at or after its due time.
+        long dueTick = Math.max(currentTick + 1L, Math.floorDiv(dueNanos - originNanos + TICK_NANOS - 1L, TICK_NANOS));
+        Timer timer = new Timer(dueTick, action);
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Removes {@code timer} so it never fires; does nothing once it has fired or been cancelled. Must not be
+     * called from a timer action.
+     */
+    void cancel(Timer timer) {
+        if (timer.level < 0) {
+            return;
+        }
+        if (timer.previous == null) {
+            slots[timer.level][timer.slot] = timer.next;
+        } else {
+            timer.previous.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.unlink();
+        size--;
+    }
+
+    /**
+     * Fires every timer due at or before {@code nowNanos}, in due order apart from timers sharing a tick.
+     * Actions may schedule further timers. An action that throws is passed to {@code failures} and the others
+     * still run.
+     */
+    void advance(long nowNanos, Consumer<Throwable> failures) {
+        long targetTick = Math.floorDiv(nowNanos - originNanos, TICK_NANOS);
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick);
+            return;
+        }
+        while (currentTick < targetTick && size > 0) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = level * SLOT_BITS;
+                if ((currentTick & ((1L << shift) - 1L)) == 0L) {
+                    cascade(level, (int) (currentTick >>> shift) & SLOT_MASK);
+                }
+            }
+            int slot = (int) currentTick & SLOT_MASK;
+            Timer timer = slots[0][slot];
+            slots[0][slot] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.unlink();
+                if (timer.dueTick > currentTick) {
+                    insert(timer);
+                } else {
+                    size--;
+                    try {
+                        timer.action.run();
+                    } catch (Throwable failure) {
+                        failures.accept(failure);
+                    }
+                }
+                timer = next;
+            }
+        }
+        currentTick = Math.max(currentTick, targetTick);
+    }
+
+    /**
+     * Time from {@code nowNanos} until the next tick that fires or moves down a timer, or {@code -1} when no
+     * timer is pending.
+     */
+    long nanosUntilNext(long nowNanos) {
+        if (size == 0) {
+            return -1L;
+        }
+        long next = Long.MAX_VALUE;
+        for (int offset = 1; offset <= SLOTS; offset++) {
+            if (slots[0][(int) (currentTick + offset) & SLOT_MASK] != null) {
+                next = currentTick + offset;
+                break;
+            }
+        }
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            long window = currentTick >>> shift;
+            for (int offset = 1; offset <= SLOTS; offset++) {
+                if (slots[level][(int) (window + offset) & SLOT_MASK] != null) {
+                    next = Math.min(next, (window + offset) << shift);
+                    break;
+                }
+            }
+        }
+        return Math.max(0L, originNanos + next * TICK_NANOS - nowNanos);
+    }
+
+    private void insert(Timer timer) {
+        long tick = Math.max(timer.dueTick, currentTick);
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int slot = (int) (tick >>> (level * SLOT_BITS)) & SLOT_MASK;
+        Timer head = slots[level][slot];
+        if (head != null) {
+            head.previous = timer;
+        }
+        timer.next = head;
+        timer.level = level;
+        timer.slot = slot;
+        slots[level][slot] = timer;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer timer = slots[level][slot];
+        slots[level][slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            timer.unlink();
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    /**
+     * A pending timer, linked into one slot of one level until it fires or is cancelled.
+     */
+    static final class Timer {
+        private final long dueTick;
+        private final Runnable action;
+        private Timer previous;
+        private Timer next;
+        private int level = -1;
+        private int slot;
+
+        private Timer(long dueTick, Runnable action) {
+            this.dueTick = dueTick;
+            this.action = action;
+        }
+
+        private void unlink() {
+            previous = null;
+            next = null;
+            level = -1;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.akiasync.scheduler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mutable state of one submitted {@link TaskPlan}. Per-node state lives in flat arrays indexed by node ordinal,
+ * so instantiating a plan costs a constant number of allocations however many nodes it has.
+ */
+final class TreeRun {
+    private static final TaskState[] STATES = TaskState.values();
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle THREADS = MethodHandles.arrayElementVarHandle(Thread[].class);
+    private static final VarHandle REMAINING;
+    private static final VarHandle SUCCEEDED_TASKS;
+    private static final VarHandle FAILED_TASKS;
+    private static final VarHandle SKIPPED_TASKS;
+    private static final VarHandle CANCELLED_TASKS;
+    private static final VarHandle CANCELLATION_REQUESTED;
+    private static final VarHandle DEADLINE_MISSED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            REMAINING = lookup.findVarHandle(TreeRun.class, "remaining", int.class);
+            SUCCEEDED_TASKS = lookup.findVarHandle(TreeRun.class, "succeeded", int.class);
+            FAILED_TASKS = lookup.findVarHandle(TreeRun.class, "failed", int.class);
+            SKIPPED_TASKS = lookup.findVarHandle(TreeRun.class, "skipped", int.class);
+            CANCELLED_TASKS = lookup.findVarHandle(TreeRun.class, "cancelled", int.class);
+            CANCELLATION_REQUESTED = lookup.findVarHandle(TreeRun.class, "cancellationRequested", boolean.class);
+            DEADLINE_MISSED = lookup.findVarHandle(TreeRun.class, "deadlineMissed", boolean.class);
+        } catch (ReflectiveOperationException failure) {
+            throw new ExceptionInInitializerError(failure);
+        }
+    }
+
+    private final long id;
+    private final long generation;
+    private final TaskPlan plan;
+    private final Object input;
+    private final TaskNode<?>[] observers;
+    private final int[] states;
+    private final int[] pendingParents;
+    private final long[] taskIds;
+    private final long[] queuedNanos;
+    private final int[] workers;
+    private final Object[] values;
+    private final RedisTaskScheduler.NodeTask[] queuedTasks;
+    private final CompletableFuture<TaskTreeResult> completion = new CompletableFuture<>();
+    private final CompletableFuture<Object> output;
+    private final TaskBatch batch;
+    private final PluginShare share;
+    private final long submittedNanos;
+    private final long[] deadlineOffsets;
+    private final long defaultTimeoutNanos;
+    private final Thread[] runners;
+    private final long[] runningSince;
+    private final int[] attempts;
+    private final long startedNanos = System.nanoTime();
+    private volatile byte[] promotions;
+    private volatile int remaining;
+    private volatile int succeeded;
+    private volatile int failed;
+    private volatile int skipped;
+    private volatile int cancelled;
+    private volatile boolean cancellationRequested;
+    private volatile boolean deadlineMissed;
+    private volatile boolean finished;
+
+    /**
+     * @param observers       public nodes of a one-shot {@link TaskTree}, indexed by ordinal, or {@code null}
+     *                        for a template run whose only observable result is the plan output
+     * @param deadlineOffsets per-node deadlines relative to {@code submittedNanos}, as resolved by
+     *                        {@link TaskPlan#deadlineOffsets}, or {@code null} when the run has none
+     * @param defaultTimeoutNanos execution limit of nodes without their own timeout, or {@code 0} for none
+     */
+    TreeRun(
+            long id,
+            long generation,
+            TaskPlan plan,
+            Object input,
+            TaskNode<?>[] observers,
+            TaskBatch batch,
+            PluginShare share,
+            long submittedNanos,
+            long[] deadlineOffsets,
+            long defaultTimeoutNanos,
+            boolean workStealing
+    ) {
+        int size = plan.size();
+        this.id = id;
+        this.generation = generation;
+        this.plan = plan;
+        this.input = input;
+        this.observers = observers;
+        this.batch = batch;
+        this.share = share;
+        this.submittedNanos = submittedNanos;
+        this.deadlineOffsets = deadlineOffsets;
+        this.defaultTimeoutNanos = defaultTimeoutNanos;
+        states = new int[size];
+        pendingParents = plan.parentCounts().clone();
+        taskIds = new long[size];
+        queuedNanos = new long[size];
+        values = new Object[size];
+        workers = workStealing ? new int[size] : null;
+        queuedTasks = workStealing ? null : new RedisTaskScheduler.NodeTask[size];
+        boolean watched = defaultTimeoutNanos > 0L || plan.hasTimeouts();
+        runners = watched ? new Thread[size] : null;
+        runningSince = watched ? new long[size] : null;
+        attempts = plan.hasRetryPolicies() ? new int[size] : null;
+        output = plan.output() == TaskPlan.NO_OUTPUT ? null : new CompletableFuture<>();
+        remaining = size;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    TaskPlan plan() {
+        return plan;
+    }
+
+    Object input() {
+        return input;
+    }
+
+    TaskNode<?> observer(int node) {
+        return observers == null ? null : observers[node];
+    }
+
+    CompletableFuture<TaskTreeResult> completion() {
+        return completion;
+    }
+
+    CompletableFuture<Object> output() {
+        return output;
+    }
+
+    /**
+     * The batch this run was submitted with, or {@code null} for a single submission.
+     */
+    TaskBatch batch() {
+        return batch;
+    }
+
+    /**
+     * The plugin share whose quota this run's nodes are charged against.
+     */
+    PluginShare share() {
+        return share;
+    }
+
+    /**
+     * Moves every node from {@link TaskState#CREATED} to {@link TaskState#WAITING}; called once by the thread
+     * that registers the run, before any node is dispatched.
+     */
+    void markWaiting() {
+        Arrays.fill(states, TaskState.WAITING.ordinal());
+    }
+
+    TaskState state(int node) {
+        return STATES[(int) INTS.getVolatile(states, node)];
+    }
+
+    boolean compareAndSetState(int node, TaskState expected, TaskState next) {
+        return INTS.compareAndSet(states, node, expected.ordinal(), next.ordinal());
+    }
+
+    /**
+     * Moves a node into a terminal state unless another thread already did, returning the state it left or
+     * {@code null} when the node was already terminal.
+     */
+    TaskState terminate(int node, TaskState terminalState) {
+        while (true) {
+            TaskState current = state(node);
+            if (current.isTerminal()) {
+                return null;
+            }
+            if (compareAndSetState(node, current, terminalState)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Records that one parent of {@code node} succeeded and returns whether it was the last one the node
+     * waited for.
+     */
+    boolean parentSucceeded(int node) {
+        return (int) INTS.getAndAdd(pendingParents, node, -1) == 1;
+    }
+
+    long taskId(int node) {
+        return (long) LONGS.getAcquire(taskIds, node);
+    }
+
+    void taskId(int node, long taskId) {
+        LONGS.setRelease(taskIds, node, taskId);
+    }
+
+    int executingWorker(int node) {
+        return workers == null ? -1 : workers[node];
+    }
+
+    void executingWorker(int node, int worker) {
+        if (workers != null) {
+            workers[node] = worker;
+        }
+    }
+
+    Object value(int node) {
+        return values[node];
+    }
+
+    void value(int node, Object value) {
+        values[node] = value;
+    }
+
+    RedisTaskScheduler.NodeTask queuedTask(int node) {
+        return queuedTasks == null ? null : queuedTasks[node];
+    }
+
+    void queuedTask(int node, RedisTaskScheduler.NodeTask task) {
+        queuedTasks[node] = task;
+    }
+
+    /**
+     * Priority levels the coordinator has aged {@code node} by. Only the coordinator writes these; workers read
+     * them to queue or throttle the node at its aged priority.
+     */
+    int promotions(int node) {
+        byte[] levels = promotions;
+        return levels == null ? 0 : levels[node];
+    }
+
+    void promotions(int node, int levels) {
+        byte[] current = promotions;
+        if (current == null) {
+            current = new byte[states.length];
+            promotions = current;
+        }
+        current[node] = (byte) levels;
+    }
+
+    /**
+     * Written by the dispatching thread before the node is queued, so the executing worker sees it.
+     */
+    void queuedNanos(int node, long nanos) {
+        queuedNanos[node] = nanos;
+    }
+
+    long queuedNanos(int node) {
+        return queuedNanos[node];
+    }
+
+    /**
+     * Execution limit of {@code node}, or {@code 0} when it may run indefinitely.
+     */
+    long timeoutNanos(int node) {
+        long timeout = plan.timeoutNanos(node);
+        return timeout > 0L ? timeout : defaultTimeoutNanos;
+    }
+
+    /**
+     * Whether any node of this run has a timeout, so the watchdog needs to look at it.
+     */
+    boolean isWatched() {
+        return runners != null;
+    }
+
+    /**
+     * Shows the watchdog that {@code runner} started running {@code node} at {@code startedNanos}.
+     */
+    void watch(int node, Thread runner, long startedNanos) {
+        runningSince[node] = startedNanos;
+        THREADS.setRelease(runners, node, runner);
+    }
+
+    /**
+     * Thread running {@code node} while it is watched, or {@code null}.
+     */
+    Thread runner(int node) {
+        return (Thread) THREADS.getAcquire(runners, node);
+    }
+
+    long runningSince(int node) {
+        return runningSince[node];
+    }
+
+    /**
+     * Stops watching {@code node} if {@code runner} still runs it. The node's thread and the watchdog both call
+     * this, and only the first succeeds, so a timed-out node is reported once and a finished one never.
+     */
+    boolean unwatch(int node, Thread runner) {
+        return THREADS.compareAndSet(runners, node, runner, null);
+    }
+
+    /**
+     * Failed runs of {@code node} so far; only the thread completing the node reads or writes this.
+     */
+    int failedAttempts(int node) {
+        return attempts == null ? 0 : attempts[node];
+    }
+
+    /**
+     * Counts one failed run of a node with a retry policy and returns the new count.
+     */
+    int attemptFailed(int node) {
+        return ++attempts[node];
+    }
+
+    boolean isCancellationRequested() {
+        return cancellationRequested;
+    }
+
+    /**
+     * Returns {@code true} only for the first caller, so a cancellation is posted to the coordinator once.
+     */
+    boolean requestCancellation() {
+        return CANCELLATION_REQUESTED.compareAndSet(this, false, true);
+    }
+
+    boolean hasDeadline(int node) {
+        return deadlineOffsets != null && deadlineOffsets[node] != TaskPlan.NO_DEADLINE;
+    }
+
+    /**
+     * Absolute {@link System#nanoTime()} deadline of {@code node}; only meaningful when {@link #hasDeadline}.
+     */
+    long deadlineNanos(int node) {
+        return submittedNanos + deadlineOffsets[node];
+    }
+
+    boolean isDeadlinePassed(int node) {
+        return hasDeadline(node) && System.nanoTime() - submittedNanos > deadlineOffsets[node];
+    }
+
+    /**
+     * Returns {@code true} only for the first caller, so a tree counts as one deadline miss however many of its
+     * nodes run late.
+     */
+    boolean markDeadlineMissed() {
+        return DEADLINE_MISSED.compareAndSet(this, false, true);
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Counts one terminal node and returns {@code true} when it was the last node of the run.
+     */
+    boolean finishNode(TaskState terminalState) {
+        VarHandle counter = switch (terminalState) {
+            case SUCCEEDED -> SUCCEEDED_TASKS;
+            case FAILED -> FAILED_TASKS;
+            case SKIPPED -> SKIPPED_TASKS;
+            case CANCELLED -> CANCELLED_TASKS;
+            default -> throw new IllegalArgumentException("Not a terminal state: " + terminalState);
+        };
+        counter.getAndAdd(this, 1);
+        if ((int) REMAINING.getAndAdd(this, -1) != 1) {
+            return false;
+        }
+        finished = true;
+        return true;
+    }
+
+    TaskTreeResult result() {
+        return new TaskTreeResult(
+                id,
+                generation,
+                plan.size(),
+                succeeded,
+                failed,
+                skipped,
+                cancelled,
+                System.nanoTime() - startedNanos
+        );
+    }
+}
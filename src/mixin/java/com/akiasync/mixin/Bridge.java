@@ -5,6 +5,9 @@ import java.util.List;
 public interface Bridge {
     void publish(LagTickSnapshot snapshot);
 
+    default void beginTick(long tickId) {
+    }
+
     default void publishDataPack(DataPackSnapshot snapshot) {
     }
 
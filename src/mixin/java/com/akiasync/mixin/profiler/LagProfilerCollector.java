@@ -69,6 +69,7 @@ public final class LagProfilerCollector {
             CURRENT.remove();
             return;
         }
+        BridgeManager.INSTANCE.beginTick(tickId);
         boolean detailed = BridgeManager.INSTANCE.consumeDetailedTick();
         TickContext context = new TickContext(
                 tickId,
@@ -0,0 +1,389 @@
+package com.akiasync.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.RegionScheduler;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaperOwnerSchedulerTest {
+    private final FakeServer server = new FakeServer();
+    private final AtomicLong generation = new AtomicLong(1L);
+    private PaperOwnerScheduler owner;
+
+    @AfterEach
+    void stopOwner() {
+        if (owner != null) {
+            owner.close();
+        }
+    }
+
+    @Test
+    void coalescedCommitsShareOneDrainPerRegionSection() throws Exception {
+        owner = start(64, true, 0L);
+        World world = server.world("world");
+        List<CompletableFuture<Integer>> reopened = new ArrayList<>();
+        List<CompletableFuture<Integer>> sectionZero = List.of(
+                owner.region(world, 0, 0, () -> 1),
+                owner.region(world, 7, 3, () -> 2),
+                owner.region(world, 15, 15, () -> {
+                    // The batch closed when its drain started, so this commit opens a new one with its own task.
+                    reopened.add(owner.region(world, 1, 1, () -> 6));
+                    return 3;
+                })
+        );
+        CompletableFuture<Integer> nextSection = owner.region(world, 16, 0, () -> 4);
+        CompletableFuture<Integer> otherWorld = owner.region(server.world("nether"), 0, 0, () -> 5);
+
+        assertEquals(3, server.regionTasks.size());
+        assertEquals(5, owner.pendingCount());
+        server.runRegionTasks();
+
+        for (int index = 0; index < sectionZero.size(); index++) {
+            assertEquals(index + 1, sectionZero.get(index).getNow(null));
+        }
+        assertEquals(4, nextSection.getNow(null));
+        assertEquals(5, otherWorld.getNow(null));
+        assertEquals(1, server.regionTasks.size());
+        assertEquals(1, owner.pendingCount());
+        server.runRegionTasks();
+        assertEquals(6, reopened.get(0).getNow(null));
+        assertEquals(0, owner.pendingCount());
+    }
+
+    @Test
+    void coalescedCommitsKeepTheirOwnGenerationCheckAndFailures() throws Exception {
+        owner = start(64, true, 0L);
+        World world = server.world("world");
+        CompletableFuture<Integer> failing = owner.region(world, 0, 0, () -> {
+            throw new IllegalStateException("commit failed");
+        });
+        CompletableFuture<Integer> afterFailure = owner.region(world, 1, 0, () -> 2);
+        CompletableFuture<Integer> reload = owner.region(world, 2, 0, () -> {
+            generation.incrementAndGet();
+            return 3;
+        });
+        CompletableFuture<Integer> stale = owner.region(world, 3, 0, () -> 4);
+
+        assertEquals(1, server.regionTasks.size());
+        server.runRegionTasks();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, failing::get);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(2, afterFailure.getNow(null));
+        assertEquals(3, reload.getNow(null));
+        assertTrue(stale.isCancelled());
+        assertEquals(0, owner.pendingCount());
+    }
+
+    @Test
+    void closeCancelsQueuedBatchesAndTheirDrainDoesNothing() {
+        owner = start(64, true, 0L);
+        World world = server.world("world");
+        List<Integer> ran = new ArrayList<>();
+        CompletableFuture<Integer> first = owner.region(world, 0, 0, () -> {
+            ran.add(1);
+            return 1;
+        });
+        CompletableFuture<Integer> second = owner.region(world, 40, 40, () -> {
+            ran.add(2);
+            return 2;
+        });
+
+        owner.close();
+        server.runRegionTasks();
+
+        assertThrows(CancellationException.class, first::join);
+        assertThrows(CancellationException.class, second::join);
+        assertTrue(ran.isEmpty());
+        assertEquals(0, owner.pendingCount());
+        assertTrue(owner.region(world, 0, 0, () -> 3).isCompletedExceptionally());
+    }
+
+    @Test
+    void schedulingFailureFailsTheWholeBatchAndFreesCapacity() {
+        owner = start(2, true, 0L);
+        World world = server.world("world");
+        IllegalStateException refused = new IllegalStateException("region scheduler refused the task");
+        server.schedulingFailure = refused;
+
+        CompletableFuture<Integer> failed = owner.region(world, 0, 0, () -> 1);
+
+        assertSame(refused, assertThrows(ExecutionException.class, failed::get).getCause());
+        assertEquals(0, owner.pendingCount());
+        server.schedulingFailure = null;
+        CompletableFuture<Integer> first = owner.region(world, 0, 0, () -> 2);
+        CompletableFuture<Integer> second = owner.region(world, 1, 1, () -> 3);
+        assertTrue(owner.region(world, 2, 2, () -> 4).isCompletedExceptionally());
+        server.runRegionTasks();
+        assertEquals(2, first.join());
+        assertEquals(3, second.join());
+    }
+
+    @Test
+    void budgetedCommitsRunInPriorityOrderAndCarryOverPastTheTickBudget() {
+        owner = start(64, false, TimeUnit.MILLISECONDS.toNanos(1));
+        List<String> order = new ArrayList<>();
+        List<CompletableFuture<String>> commits = new ArrayList<>();
+        for (SchedulerPriority priority : List.of(
+                SchedulerPriority.LOW,
+                SchedulerPriority.NORMAL,
+                SchedulerPriority.CRITICAL,
+                SchedulerPriority.HIGH
+        )) {
+            commits.add(owner.budgeted(priority, () -> {
+                // Each commit alone overruns the budget, so every tick still runs exactly one.
+                spin(TimeUnit.MILLISECONDS.toNanos(2));
+                order.add(priority.name());
+                return priority.name();
+            }));
+        }
+        assertEquals(1, server.globalTasks.size());
+
+        int[] carried = {3, 2, 1, 0};
+        long[] deferred = {3L, 5L, 6L, 6L};
+        for (int tick = 0; tick < carried.length; tick++) {
+            server.runGlobalTasks();
+            assertEquals(tick + 1, order.size());
+            assertEquals(carried[tick], owner.carriedCommits());
+            assertEquals(deferred[tick], owner.deferredCommits());
+        }
+
+        assertEquals(List.of("CRITICAL", "HIGH", "NORMAL", "LOW"), order);
+        assertTrue(server.globalTasks.isEmpty());
+        assertEquals(0, owner.pendingCount());
+        for (CompletableFuture<String> commit : commits) {
+            assertTrue(commit.isDone() && !commit.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    void budgetedCommitsWithoutABudgetDrainInOneTick() {
+        owner = start(64, false, 0L);
+        List<CompletableFuture<Integer>> commits = new ArrayList<>();
+        for (int index = 0; index < 10; index++) {
+            int value = index;
+            commits.add(owner.budgeted(SchedulerPriority.NORMAL, () -> value));
+        }
+        server.runGlobalTasks();
+
+        for (int index = 0; index < commits.size(); index++) {
+            assertEquals(index, commits.get(index).getNow(null));
+        }
+        assertEquals(0, owner.carriedCommits());
+        assertEquals(0L, owner.deferredCommits());
+        assertTrue(server.globalTasks.isEmpty());
+    }
+
+    @Test
+    void budgetedDrainNeverStrandsACommitQueuedAfterItsLastPoll() throws Exception {
+        owner = start(64, false, 0L);
+        AtomicBoolean stop = new AtomicBoolean();
+        // Plays the server thread, running every drain as soon as it is scheduled.
+        Thread serverThread = new Thread(() -> {
+            while (!stop.get()) {
+                server.runGlobalTasks();
+                Thread.yield();
+            }
+        }, "Aki-Test-Server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        try {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+            for (int index = 0; index < 20_000 && System.nanoTime() - until < 0L; index++) {
+                // Queued just after the previous commit completes, with the delay swept across the tail of its
+                // drain: a commit arriving after the last poll finds the drain still marked scheduled and relies
+                // on the drain noticing it. The race needs a second core to show up.
+                spin((index % 64) * 20L);
+                CompletableFuture<Integer> commit = owner.budgeted(SchedulerPriority.NORMAL, () -> 1);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                while (!commit.isDone()) {
+                    assertTrue(System.nanoTime() - deadline < 0L, "Commit " + index + " was left without a drain");
+                    Thread.yield();
+                }
+            }
+        } finally {
+            stop.set(true);
+            serverThread.join();
+        }
+        assertEquals(0, owner.pendingCount());
+    }
+
+    @Test
+    void closeFailsCarriedBudgetedCommitsAndStopsTheDrain() {
+        owner = start(64, false, TimeUnit.MILLISECONDS.toNanos(1));
+        AtomicBoolean secondRan = new AtomicBoolean();
+        CompletableFuture<Integer> first = owner.budgeted(SchedulerPriority.HIGH, () -> {
+            spin(TimeUnit.MILLISECONDS.toNanos(2));
+            return 1;
+        });
+        CompletableFuture<Integer> second = owner.budgeted(SchedulerPriority.LOW, () -> {
+            secondRan.set(true);
+            return 2;
+        });
+        server.runGlobalTasks();
+        assertEquals(1, first.join());
+        assertEquals(1, owner.carriedCommits());
+
+        owner.close();
+        server.runGlobalTasks();
+
+        assertThrows(CancellationException.class, second::join);
+        assertFalse(secondRan.get());
+        assertEquals(0, owner.carriedCommits());
+        assertEquals(0, owner.pendingCount());
+        assertTrue(owner.budgeted(SchedulerPriority.HIGH, () -> 3).isCompletedExceptionally());
+    }
+
+    @Test
+    void budgetedSchedulingFailureFailsQueuedCommits() {
+        owner = start(64, false, 0L);
+        IllegalStateException refused = new IllegalStateException("global scheduler refused the task");
+        server.schedulingFailure = refused;
+
+        CompletableFuture<Integer> failed = owner.budgeted(SchedulerPriority.NORMAL, () -> 1);
+
+        assertSame(refused, assertThrows(ExecutionException.class, failed::get).getCause());
+        assertEquals(0, owner.pendingCount());
+        server.schedulingFailure = null;
+        CompletableFuture<Integer> next = owner.budgeted(SchedulerPriority.NORMAL, () -> 2);
+        server.runGlobalTasks();
+        assertEquals(2, next.join());
+    }
+
+    private PaperOwnerScheduler start(int capacity, boolean coalesce, long commitTickBudgetNanos) {
+        PaperOwnerScheduler scheduler = new PaperOwnerScheduler(
+                server.plugin,
+                capacity,
+                coalesce,
+                commitTickBudgetNanos,
+                generation::get
+        );
+        scheduler.start(generation.get());
+        return scheduler;
+    }
+
+    private static void spin(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() - until < 0L) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Paper's schedulers reduced to queues the test runs by hand, one call to a run method per server tick.
+     */
+    private static final class FakeServer {
+        private final ArrayDeque<Runnable> globalTasks = new ArrayDeque<>();
+        private final ArrayDeque<Runnable> regionTasks = new ArrayDeque<>();
+        private volatile RuntimeException schedulingFailure;
+        private final Plugin plugin;
+
+        private FakeServer() {
+            GlobalRegionScheduler global = proxy(GlobalRegionScheduler.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "execute" -> schedule(globalTasks, (Runnable) args[1]);
+                    case "runDelayed" -> {
+                        // Every test drain is one tick apart, so a one-tick delay just waits for the next one.
+                        @SuppressWarnings("unchecked")
+                        Consumer<ScheduledTask> task = (Consumer<ScheduledTask>) args[1];
+                        schedule(globalTasks, () -> task.accept(null));
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+                return null;
+            });
+            RegionScheduler region = proxy(RegionScheduler.class, (proxy, method, args) -> {
+                if (!method.getName().equals("execute")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                schedule(regionTasks, (Runnable) args[4]);
+                return null;
+            });
+            Server server = proxy(Server.class, (proxy, method, args) -> switch (method.getName()) {
+                case "getGlobalRegionScheduler" -> global;
+                case "getRegionScheduler" -> region;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+            plugin = proxy(Plugin.class, (proxy, method, args) -> switch (method.getName()) {
+                case "getServer" -> server;
+                case "getName" -> "Aki-Test";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private World world(String name) {
+            return proxy(World.class, (proxy, method, args) -> {
+                if (method.getName().equals("getName")) {
+                    return name;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+        }
+
+        private void schedule(ArrayDeque<Runnable> tasks, Runnable task) {
+            RuntimeException failure = schedulingFailure;
+            if (failure != null) {
+                throw failure;
+            }
+            synchronized (tasks) {
+                tasks.add(task);
+            }
+        }
+
+        /**
+         * Runs the region tasks queued so far; tasks they schedule wait for the next call.
+         */
+        private void runRegionTasks() {
+            run(regionTasks);
+        }
+
+        private void runGlobalTasks() {
+            run(globalTasks);
+        }
+
+        private static void run(ArrayDeque<Runnable> tasks) {
+            List<Runnable> due;
+            synchronized (tasks) {
+                due = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            due.forEach(Runnable::run);
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(
+                    type.getClassLoader(),
+                    new Class<?>[] {type},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "toString" -> type.getSimpleName();
+                        default -> handler.invoke(proxy, method, args);
+                    }
+            ));
+        }
+    }
+}
@@ -11,6 +11,7 @@ plugins {
     alias(libs.plugins.runPaper)
     alias(libs.plugins.resourceFactory)
     alias(libs.plugins.accessWiden)
+    alias(libs.plugins.jmh)
 }
 
 group = "com.akiasync"
@@ -120,6 +121,13 @@ accessWideners {
     })
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh
+    // Benchmarks count one operation per scheduled node, so gc.alloc.rate.norm reads as bytes per node.
+    profilers.add("gc")
+    resultFormat = "JSON"
+}
+
 tasks {
     runServer {
         downloadsApiService.set(leavesDownloadApiService())
@@ -0,0 +1,72 @@
+package com.akiasync.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinator message throughput against {@link SchedulerConfig#coordinatorBatchSize()}. Every single-node
+ * tree costs the coordinator two messages, its registration and its completion, and the node itself is
+ * trivial, so the score in messages per second is bounded by the coordinator loop.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinatorBenchmark {
+    private static final int TREES_PER_INVOCATION = 2_048;
+    private static final int MESSAGES_PER_INVOCATION = TREES_PER_INVOCATION * 2;
+
+    @Param({"1", "8", "64", "512"})
+    public int coordinatorBatchSize;
+
+    @Param({"4"})
+    public int workers;
+
+    private RedisTaskScheduler scheduler;
+    private TaskTreeTemplate<Integer, Integer> template;
+
+    @Setup(Level.Trial)
+    public void start() {
+        scheduler = BenchmarkSchedulers.start(BenchmarkSchedulers.config(workers, coordinatorBatchSize));
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "message",
+                SchedulerPriority.NORMAL,
+                (input, context) -> input
+        );
+        template = builder.build(builder.root());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_INVOCATION)
+    public void singleNodeTrees() {
+        List<CompletableFuture<TaskTreeResult>> completions = new ArrayList<>(TREES_PER_INVOCATION);
+        for (int index = 0; index < TREES_PER_INVOCATION; index++) {
+            completions.add(scheduler.submit(template, index).completion().toCompletableFuture());
+        }
+        BenchmarkSchedulers.awaitSuccess(completions);
+    }
+}
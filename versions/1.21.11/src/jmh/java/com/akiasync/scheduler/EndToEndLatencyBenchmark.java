@@ -0,0 +1,76 @@
+package com.akiasync.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submit-to-result latency of one small fork/join tree, a root, eight parallel children and a join, while the
+ * scheduler is otherwise idle. Sampled mode reports the percentiles alongside the mean.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndLatencyBenchmark {
+    private static final int CHILDREN = 8;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int workers;
+
+    @Param({"SHARED_QUEUE", "WORK_STEALING"})
+    public ComputeMode computeMode;
+
+    private RedisTaskScheduler scheduler;
+    private TaskTreeTemplate<Integer, Integer> template;
+
+    @Setup(Level.Trial)
+    public void start() {
+        scheduler = BenchmarkSchedulers.start(
+                BenchmarkSchedulers.config(workers, 64).withComputeMode(computeMode)
+        );
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "root",
+                SchedulerPriority.NORMAL,
+                (input, context) -> input
+        );
+        List<TaskTreeTemplate.Node<Integer>> children = new ArrayList<>(CHILDREN);
+        for (int index = 0; index < CHILDREN; index++) {
+            children.add(builder.root().then("child", SchedulerPriority.NORMAL, (value, context) -> value + 1));
+        }
+        TaskTreeTemplate.Node<Integer> join = builder.joinAll(
+                "join",
+                SchedulerPriority.NORMAL,
+                children,
+                (values, context) -> values.stream().mapToInt(Integer::intValue).sum()
+        );
+        template = builder.build(join);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    public TaskTreeResult forkJoinTree() {
+        TemplateRunHandle<Integer> run = scheduler.submit(template, 1);
+        return BenchmarkSchedulers.awaitSuccess(run.completion().toCompletableFuture());
+    }
+}
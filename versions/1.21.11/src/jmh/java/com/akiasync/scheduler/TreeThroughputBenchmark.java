@@ -0,0 +1,139 @@
+package com.akiasync.scheduler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submit-to-completion throughput of a fixed number of nodes arranged as single-node trees, wide fan-outs or
+ * deep chains. Scores are nodes per second; run with {@code -prof gc} and {@code gc.alloc.rate.norm} is the
+ * allocation per node.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TreeThroughputBenchmark {
+    static final int NODES_PER_INVOCATION = 1_024;
+    private static final int NODES_PER_TREE = 64;
+
+    @Param({"single", "wide", "deep"})
+    public String shape;
+
+    @Param({"SHARED_QUEUE", "WORK_STEALING"})
+    public ComputeMode computeMode;
+
+    @Param({"COORDINATOR", "WORKER"})
+    public CompletionMode completionMode;
+
+    @Param({"4"})
+    public int workers;
+
+    private RedisTaskScheduler scheduler;
+    private TaskTreeTemplate<Integer, Integer> template;
+
+    @Setup(Level.Trial)
+    public void start() {
+        scheduler = BenchmarkSchedulers.start(
+                BenchmarkSchedulers.config(workers, 64)
+                        .withComputeMode(computeMode)
+                        .withCompletionMode(completionMode)
+        );
+        template = template(shape);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        scheduler.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES_PER_INVOCATION)
+    public void taskTrees() {
+        int trees = NODES_PER_INVOCATION / nodesPerTree(shape);
+        List<CompletableFuture<TaskTreeResult>> completions = new ArrayList<>(trees);
+        for (int index = 0; index < trees; index++) {
+            completions.add(scheduler.submit(tree(shape, index)).completion().toCompletableFuture());
+        }
+        BenchmarkSchedulers.awaitSuccess(completions);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES_PER_INVOCATION)
+    public void templateRuns() {
+        int trees = NODES_PER_INVOCATION / nodesPerTree(shape);
+        List<CompletableFuture<TaskTreeResult>> completions = new ArrayList<>(trees);
+        for (int index = 0; index < trees; index++) {
+            completions.add(scheduler.submit(template, index).completion().toCompletableFuture());
+        }
+        BenchmarkSchedulers.awaitSuccess(completions);
+    }
+
+    private static int nodesPerTree(String shape) {
+        return shape.equals("single") ? 1 : NODES_PER_TREE;
+    }
+
+    private static TaskTree<Integer> tree(String shape, int input) {
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> input);
+        switch (shape) {
+            case "single" -> {
+            }
+            case "wide" -> {
+                for (int index = 1; index < NODES_PER_TREE; index++) {
+                    tree.root().then("leaf", SchedulerPriority.NORMAL, (value, context) -> value + 1);
+                }
+            }
+            case "deep" -> {
+                TaskNode<Integer> node = tree.root();
+                for (int index = 1; index < NODES_PER_TREE; index++) {
+                    node = node.then("link", SchedulerPriority.NORMAL, (value, context) -> value + 1);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown tree shape " + shape);
+        }
+        return tree;
+    }
+
+    private static TaskTreeTemplate<Integer, Integer> template(String shape) {
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "root",
+                SchedulerPriority.NORMAL,
+                (input, context) -> input
+        );
+        TaskTreeTemplate.Node<Integer> output = builder.root();
+        switch (shape) {
+            case "single" -> {
+            }
+            case "wide" -> {
+                for (int index = 1; index < NODES_PER_TREE; index++) {
+                    output = builder.root().then("leaf", SchedulerPriority.NORMAL, (value, context) -> value + 1);
+                }
+            }
+            case "deep" -> {
+                for (int index = 1; index < NODES_PER_TREE; index++) {
+                    output = output.then("link", SchedulerPriority.NORMAL, (value, context) -> value + 1);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown tree shape " + shape);
+        }
+        return builder.build(output);
+    }
+}
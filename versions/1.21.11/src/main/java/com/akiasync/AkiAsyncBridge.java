@@ -9,14 +9,17 @@ import com.akiasync.lag.LagSystemRecord;
 import com.akiasync.lag.LagTickRecord;
 import com.akiasync.mixin.Bridge;
 import com.akiasync.mixin.BridgeManager;
+import com.akiasync.scheduler.TickClock;
 
 public final class AkiAsyncBridge implements Bridge {
     private final LagProfilerService lagProfiler;
     private final DataPackService dataPackService;
+    private final TickClock tickClock;
 
-    public AkiAsyncBridge(LagProfilerService lagProfiler, DataPackService dataPackService) {
+    public AkiAsyncBridge(LagProfilerService lagProfiler, DataPackService dataPackService, TickClock tickClock) {
         this.lagProfiler = lagProfiler;
         this.dataPackService = dataPackService;
+        this.tickClock = tickClock;
     }
 
     @Override
@@ -44,8 +47,14 @@ public final class AkiAsyncBridge implements Bridge {
         ));
     }
 
+    @Override
+    public void beginTick(long tickId) {
+        tickClock.tickStarted();
+    }
+
     @Override
     public void publish(LagTickSnapshot snapshot) {
+        tickClock.recordTick(snapshot.wallNanos());
         lagProfiler.accept(new LagTickRecord(
                 snapshot.tickId(),
                 snapshot.startedAtMillis(),
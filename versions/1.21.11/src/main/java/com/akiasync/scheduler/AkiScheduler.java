@@ -4,8 +4,12 @@ import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
+import java.util.Collection;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
@@ -14,14 +18,28 @@ public final class AkiScheduler implements AutoCloseable {
     private final PaperOwnerScheduler ownerScheduler;
 
     public AkiScheduler(Plugin plugin, SchedulerConfig config) {
+        this(plugin, config, new TickClock());
+    }
+
+    /**
+     * @param tickClock server tick timings that let an adaptive worker pool back off while ticks overrun
+     */
+    public AkiScheduler(Plugin plugin, SchedulerConfig config, TickClock tickClock) {
         Objects.requireNonNull(plugin, "plugin");
         Objects.requireNonNull(config, "config");
         taskScheduler = new RedisTaskScheduler(
                 "Aki-Async",
                 config,
+                tickClock,
                 failure -> plugin.getLogger().log(Level.SEVERE, "Internal scheduler failure", failure)
         );
-        ownerScheduler = new PaperOwnerScheduler(plugin, config.maxOwnerTasks(), taskScheduler::generation);
+        ownerScheduler = new PaperOwnerScheduler(
+                plugin,
+                config.maxOwnerTasks(),
+                config.coalesceRegionCommits(),
+                config.commitTickBudgetNanos(),
+                taskScheduler::generation
+        );
     }
 
     public void start() {
@@ -36,6 +54,170 @@ public final class AkiScheduler implements AutoCloseable {
         return taskScheduler.submit(tree);
     }
 
+    /**
+     * Runs a prebuilt template with a fresh input. The same template may be submitted concurrently.
+     */
+    public <I, R> TemplateRunHandle<R> submit(TaskTreeTemplate<I, R> template, I input) {
+        return taskScheduler.submit(template, input);
+    }
+
+    /**
+     * Submits a tree, waiting for task capacity instead of rejecting it while the scheduler is saturated.
+     * Waiting trees are admitted in root-priority order; the stage fails only if the tree can never be accepted
+     * or the scheduler stops first.
+     */
+    public <T> CompletionStage<TaskTreeHandle<T>> submitAsync(TaskTree<T> tree) {
+        return taskScheduler.submitAsync(tree, -1L);
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> submitAsync(TaskTreeTemplate<I, R> template, I input) {
+        return taskScheduler.submitAsync(template, input, -1L);
+    }
+
+    /**
+     * Like {@link #submitAsync(TaskTree)}, but fails the stage with a {@link RejectedExecutionException} when no
+     * capacity frees up within {@code timeout}.
+     */
+    public <T> CompletionStage<TaskTreeHandle<T>> trySubmit(TaskTree<T> tree, long timeout, TimeUnit unit) {
+        return taskScheduler.submitAsync(tree, timeoutNanos(timeout, unit));
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> trySubmit(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long timeout,
+            TimeUnit unit
+    ) {
+        return taskScheduler.submitAsync(template, input, timeoutNanos(timeout, unit));
+    }
+
+    /**
+     * Submits {@code tree} once {@code delay} has passed, timed by the coordinator instead of a server task. The
+     * stage fails with a {@link java.util.concurrent.CancellationException} if the scheduler stops or is disabled
+     * first; cancelling it through {@link CompletionStage#toCompletableFuture()} drops the submission.
+     */
+    public <T> CompletionStage<TaskTreeHandle<T>> submitDelayed(TaskTree<T> tree, long delay, TimeUnit unit) {
+        Objects.requireNonNull(tree, "tree");
+        return taskScheduler.submitDelayed(() -> taskScheduler.submit(tree), delayNanos(delay, unit));
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> submitDelayed(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long delay,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(template, "template");
+        return taskScheduler.submitDelayed(() -> taskScheduler.submit(template, input), delayNanos(delay, unit));
+    }
+
+    /**
+     * Submits a tree from {@code trees} every {@code period}, first after {@code initialDelay}. A run is skipped
+     * while the previous one is still going, and submissions stop when the scheduler is disabled.
+     */
+    public PeriodicSubmission submitPeriodic(
+            Supplier<? extends TaskTree<?>> trees,
+            long initialDelay,
+            long period,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(trees, "trees");
+        return taskScheduler.submitPeriodic(
+                () -> taskScheduler.submit(trees.get()).completion(),
+                delayNanos(initialDelay, unit),
+                periodNanos(period, unit)
+        );
+    }
+
+    /**
+     * Runs {@code template} every {@code period} with an input taken from {@code inputs}.
+     */
+    public <I> PeriodicSubmission submitPeriodic(
+            TaskTreeTemplate<I, ?> template,
+            Supplier<? extends I> inputs,
+            long initialDelay,
+            long period,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(inputs, "inputs");
+        return taskScheduler.submitPeriodic(
+                () -> taskScheduler.submit(template, inputs.get()).completion(),
+                delayNanos(initialDelay, unit),
+                periodNanos(period, unit)
+        );
+    }
+
+    /**
+     * Runs {@code pipeline} for the chunk at {@code chunkX}, {@code chunkZ}: the snapshot and the commit run on
+     * the region that owns the chunk, and the commit is skipped if the chunk was unloaded in between.
+     */
+    public <I, R> CompletableFuture<R> submit(
+            TaskPipeline<I, R> pipeline,
+            World world,
+            int chunkX,
+            int chunkZ,
+            I input
+    ) {
+        Objects.requireNonNull(pipeline, "pipeline");
+        Objects.requireNonNull(world, "world");
+        return pipeline.run(
+                input,
+                taskScheduler,
+                stage -> ownerScheduler.region(world, chunkX, chunkZ, stage),
+                () -> world.isChunkLoaded(chunkX, chunkZ)
+        );
+    }
+
+    /**
+     * Runs {@code pipeline} on {@code entity}'s scheduler; the commit is skipped if the entity was removed in
+     * between.
+     */
+    public <I, R> CompletableFuture<R> submit(TaskPipeline<I, R> pipeline, Entity entity, I input) {
+        Objects.requireNonNull(pipeline, "pipeline");
+        Objects.requireNonNull(entity, "entity");
+        return pipeline.run(input, taskScheduler, stage -> ownerScheduler.entity(entity, stage), entity::isValid);
+    }
+
+    /**
+     * Submits many trees with a single capacity reservation and coordinator round trip. The batch is admitted
+     * all or nothing; its completion aggregates the results of every tree.
+     */
+    public TaskBatchHandle<TaskTreeHandle<?>> submitAll(Collection<? extends TaskTree<?>> trees) {
+        return taskScheduler.submitAll(trees);
+    }
+
+    /**
+     * Runs {@code template} once per input as one all-or-nothing batch.
+     */
+    public <I, R> TaskBatchHandle<TemplateRunHandle<R>> submitAll(
+            TaskTreeTemplate<I, R> template,
+            Collection<? extends I> inputs
+    ) {
+        return taskScheduler.submitAll(template, inputs);
+    }
+
+    /**
+     * Returns a view that charges submissions to {@code plugin}'s own share, limited to
+     * {@link SchedulerConfig#maxPluginTasks()} outstanding tasks at weight 1.
+     */
+    public PluginScheduler forPlugin(Plugin plugin) {
+        return forPlugin(plugin, 1, taskScheduler.config().maxPluginTasks());
+    }
+
+    /**
+     * Returns a view that charges submissions to {@code plugin}'s own share. Within a priority, plugins receive
+     * compute time in proportion to their weights; {@code maxOutstandingTasks} caps the plugin's accepted but
+     * unfinished nodes. Calling this again for the same plugin updates its weight and quota.
+     */
+    public PluginScheduler forPlugin(Plugin plugin, int weight, int maxOutstandingTasks) {
+        Objects.requireNonNull(plugin, "plugin");
+        return new PluginScheduler(
+                taskScheduler,
+                taskScheduler.share(plugin.getName(), weight, maxOutstandingTasks)
+        );
+    }
+
     public long generation() {
         return taskScheduler.generation();
     }
@@ -90,8 +272,29 @@ public final class AkiScheduler implements AutoCloseable {
         });
     }
 
+    /**
+     * Queues a commit for the global owner thread, which spends at most
+     * {@link SchedulerConfig#commitTickBudgetNanos()} per tick on these commits and carries the rest to the next
+     * tick, highest priority first. Use it for large result applications that may be spread over several ticks.
+     */
+    public <T> CompletableFuture<T> commitBudgeted(SchedulerPriority priority, Supplier<T> commit) {
+        return ownerScheduler.budgeted(priority, commit);
+    }
+
+    public CompletableFuture<Void> commitBudgeted(SchedulerPriority priority, Runnable commit) {
+        Objects.requireNonNull(commit, "commit");
+        return commitBudgeted(priority, () -> {
+            commit.run();
+            return null;
+        });
+    }
+
     public SchedulerSnapshot snapshot() {
-        return taskScheduler.snapshot(ownerScheduler.pendingCount());
+        return taskScheduler.snapshot(
+                ownerScheduler.pendingCount(),
+                ownerScheduler.carriedCommits(),
+                ownerScheduler.deferredCommits()
+        );
     }
 
     @Override
@@ -99,4 +302,28 @@ public final class AkiScheduler implements AutoCloseable {
         ownerScheduler.close();
         taskScheduler.close();
     }
+
+    static long timeoutNanos(long timeout, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (timeout < 0L) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        return unit.toNanos(timeout);
+    }
+
+    static long delayNanos(long delay, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (delay < 0L) {
+            throw new IllegalArgumentException("delay must not be negative");
+        }
+        return unit.toNanos(delay);
+    }
+
+    static long periodNanos(long period, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (period < 1L) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        return unit.toNanos(period);
+    }
 }
@@ -0,0 +1,13 @@
+package com.akiasync.scheduler;
+
+public enum CompletionMode {
+    /**
+     * Workers hand every node outcome to the coordinator, which advances the tree and dispatches children.
+     */
+    COORDINATOR,
+    /**
+     * The worker that finished a node advances the tree with atomics and dispatches children itself; the
+     * coordinator only handles registration, cancellation and shutdown.
+     */
+    WORKER
+}
@@ -0,0 +1,12 @@
+package com.akiasync.scheduler;
+
+public enum ComputeMode {
+    /**
+     * All workers share one {@code PrioritisedTaskQueue} and one wake-up semaphore.
+     */
+    SHARED_QUEUE,
+    /**
+     * Every worker owns a deque per priority level; children run next to their parent and idle workers steal.
+     */
+    WORK_STEALING
+}
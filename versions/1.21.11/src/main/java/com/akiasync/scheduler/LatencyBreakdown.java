@@ -0,0 +1,8 @@
+package com.akiasync.scheduler;
+
+/**
+ * Where the time of finished nodes went: waiting in the compute queue, running, and waiting for the scheduler
+ * to commit the node's outcome to its tree after it returned.
+ */
+public record LatencyBreakdown(LatencySnapshot queueWait, LatencySnapshot execution, LatencySnapshot commit) {
+}
@@ -0,0 +1,7 @@
+package com.akiasync.scheduler;
+
+/**
+ * Percentiles of one latency histogram, in nanoseconds; all zero until something has been recorded.
+ */
+public record LatencySnapshot(long count, long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos) {
+}
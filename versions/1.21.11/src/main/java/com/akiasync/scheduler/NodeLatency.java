@@ -0,0 +1,26 @@
+package com.akiasync.scheduler;
+
+/**
+ * Queue-wait, execution and commit histograms for one priority or one node name, plus the smoothed
+ * per-element cost of the name's fan-outs.
+ */
+final class NodeLatency {
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final LatencyHistogram execution = new LatencyHistogram();
+    final LatencyHistogram commit = new LatencyHistogram();
+    private volatile long elementNanos = -1L;
+
+    long elementNanos() {
+        return elementNanos;
+    }
+
+    void recordElementNanos(long nanos) {
+        long previous = elementNanos;
+        // Racing updates may drop a sample, which only slows the estimate down.
+        elementNanos = previous < 0L ? nanos : previous + (nanos - previous) / 4L;
+    }
+
+    LatencyBreakdown snapshot() {
+        return new LatencyBreakdown(queueWait.snapshot(), execution.snapshot(), commit.snapshot());
+    }
+}
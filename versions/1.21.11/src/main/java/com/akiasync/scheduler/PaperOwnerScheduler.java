@@ -6,32 +6,57 @@ import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 final class PaperOwnerScheduler implements AutoCloseable {
+    /**
+     * Coalesced region commits are grouped by 16x16-chunk section. Folia hands whole sections to region
+     * threads, so one batch never spans two owners.
+     */
+    private static final int REGION_SECTION_SHIFT = 4;
+
     private final Plugin plugin;
     private final Server server;
     private final int capacity;
+    private final boolean coalesceRegionCommits;
+    private final long commitTickBudgetNanos;
     private final LongSupplier generationSupplier;
     private final AtomicBoolean active = new AtomicBoolean();
     private final AtomicInteger pendingCount = new AtomicInteger();
     private final AtomicLong taskIds = new AtomicLong();
     private final ConcurrentHashMap<Long, OwnerTask<?>> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<RegionSection, RegionBatch> regionBatches = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<BudgetedCommit> budgetedCommits = new PriorityBlockingQueue<>();
+    private final AtomicLong budgetedSequence = new AtomicLong();
+    private final AtomicBoolean budgetedDrainScheduled = new AtomicBoolean();
+    private final LongAdder deferredCommits = new LongAdder();
+    private volatile int carriedCommits;
     private volatile long generation;
 
-    PaperOwnerScheduler(Plugin plugin, int capacity, LongSupplier generationSupplier) {
+    PaperOwnerScheduler(
+            Plugin plugin,
+            int capacity,
+            boolean coalesceRegionCommits,
+            long commitTickBudgetNanos,
+            LongSupplier generationSupplier
+    ) {
         this.plugin = Objects.requireNonNull(plugin, "plugin");
         server = plugin.getServer();
         this.capacity = capacity;
+        this.coalesceRegionCommits = coalesceRegionCommits;
+        this.commitTickBudgetNanos = commitTickBudgetNanos;
         this.generationSupplier = Objects.requireNonNull(generationSupplier, "generationSupplier");
     }
 
@@ -48,6 +73,9 @@ final class PaperOwnerScheduler implements AutoCloseable {
 
     <T> CompletableFuture<T> region(World world, int chunkX, int chunkZ, Supplier<T> commit) {
         Objects.requireNonNull(world, "world");
+        if (coalesceRegionCommits) {
+            return coalesce(world, chunkX, chunkZ, commit);
+        }
         return schedule(commit, task -> server.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task));
     }
 
@@ -74,10 +102,40 @@ final class PaperOwnerScheduler implements AutoCloseable {
         return task.future;
     }
 
+    <T> CompletableFuture<T> budgeted(SchedulerPriority priority, Supplier<T> commit) {
+        Objects.requireNonNull(priority, "priority");
+        Objects.requireNonNull(commit, "commit");
+        if (!active.get() || !reserve()) {
+            return failedCapacityFuture();
+        }
+        QueuedCommit<T> queued = new QueuedCommit<>(generation, commit);
+        budgetedCommits.add(new BudgetedCommit(priority, budgetedSequence.incrementAndGet(), queued));
+        if (!active.get()) {
+            finishBudgeted(new CancellationException("Plugin scheduler stopped while the commit was being scheduled"));
+        } else {
+            requestBudgetedDrain();
+        }
+        return queued.future;
+    }
+
     int pendingCount() {
         return pendingCount.get();
     }
 
+    /**
+     * Budgeted commits the last drain left for a later tick.
+     */
+    int carriedCommits() {
+        return carriedCommits;
+    }
+
+    /**
+     * Total number of times a budgeted commit was carried over to the next tick.
+     */
+    long deferredCommits() {
+        return deferredCommits.sum();
+    }
+
     @Override
     public void close() {
         if (!active.compareAndSet(true, false)) {
@@ -87,6 +145,109 @@ final class PaperOwnerScheduler implements AutoCloseable {
         for (OwnerTask<?> task : new ArrayList<>(pending.values())) {
             task.cancel("Plugin scheduler stopped before the commit could run");
         }
+        regionBatches.forEach((section, batch) -> {
+            if (regionBatches.remove(section, batch)) {
+                batch.cancel("Plugin scheduler stopped before the commit could run");
+            }
+        });
+        finishBudgeted(new CancellationException("Plugin scheduler stopped before the commit could run"));
+        carriedCommits = 0;
+    }
+
+    private void requestBudgetedDrain() {
+        if (!budgetedDrainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            server.getGlobalRegionScheduler().execute(plugin, this::drainBudgeted);
+        } catch (RuntimeException | Error failure) {
+            budgetedDrainScheduled.set(false);
+            finishBudgeted(failure);
+        }
+    }
+
+    /**
+     * Runs budgeted commits in priority order until the tick budget is spent. The first commit always runs so a
+     * single commit larger than the budget cannot stall the lane; whatever is left is retried next tick.
+     */
+    private void drainBudgeted() {
+        long started = System.nanoTime();
+        BudgetedCommit next;
+        while ((next = budgetedCommits.poll()) != null) {
+            next.commit().run();
+            if (commitTickBudgetNanos > 0L && System.nanoTime() - started >= commitTickBudgetNanos) {
+                break;
+            }
+        }
+        int carried = budgetedCommits.size();
+        carriedCommits = carried;
+        if (carried > 0 && active.get()) {
+            deferredCommits.add(carried);
+            try {
+                server.getGlobalRegionScheduler().runDelayed(plugin, task -> drainBudgeted(), 1L);
+            } catch (RuntimeException | Error failure) {
+                budgetedDrainScheduled.set(false);
+                finishBudgeted(failure);
+            }
+            return;
+        }
+        budgetedDrainScheduled.set(false);
+        // A commit queued after the last poll saw the drain still scheduled and did not request another one.
+        if (!budgetedCommits.isEmpty() && active.get()) {
+            requestBudgetedDrain();
+        }
+    }
+
+    private void finishBudgeted(Throwable failure) {
+        BudgetedCommit next;
+        while ((next = budgetedCommits.poll()) != null) {
+            next.commit().finish(failure);
+        }
+    }
+
+    /**
+     * Appends a commit to its region section's open batch. The commit that opens a batch schedules the one task
+     * that drains it; commits arriving until that task runs ride along without a scheduler entry of their own.
+     */
+    private <T> CompletableFuture<T> coalesce(World world, int chunkX, int chunkZ, Supplier<T> commit) {
+        Objects.requireNonNull(commit, "commit");
+        if (!active.get() || !reserve()) {
+            return failedCapacityFuture();
+        }
+        QueuedCommit<T> queued = new QueuedCommit<>(generation, commit);
+        RegionSection section = new RegionSection(
+                world,
+                chunkX >> REGION_SECTION_SHIFT,
+                chunkZ >> REGION_SECTION_SHIFT
+        );
+        RegionBatch batch = regionBatches.compute(section, (ignored, open) -> {
+            RegionBatch target = open == null ? new RegionBatch() : open;
+            target.commits.add(queued);
+            return target;
+        });
+        if (batch.scheduled.compareAndSet(false, true)) {
+            try {
+                server.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, () -> drain(section, batch));
+            } catch (RuntimeException | Error failure) {
+                if (regionBatches.remove(section, batch)) {
+                    batch.fail(failure);
+                }
+            }
+        }
+        if (!active.get() && regionBatches.remove(section, batch)) {
+            batch.cancel("Plugin scheduler stopped while the commit was being scheduled");
+        }
+        return queued.future;
+    }
+
+    private void drain(RegionSection section, RegionBatch batch) {
+        // Closing the batch first sends later commits to a fresh batch with its own task.
+        if (!regionBatches.remove(section, batch)) {
+            return;
+        }
+        for (QueuedCommit<?> commit : batch.commits) {
+            commit.run();
+        }
     }
 
     private <T> CompletableFuture<T> schedule(Supplier<T> commit, Dispatcher dispatcher) {
@@ -145,6 +306,78 @@ final class PaperOwnerScheduler implements AutoCloseable {
         void dispatch(Runnable task);
     }
 
+    private record RegionSection(World world, int sectionX, int sectionZ) {
+    }
+
+    private record BudgetedCommit(
+            SchedulerPriority priority,
+            long sequence,
+            QueuedCommit<?> commit
+    ) implements Comparable<BudgetedCommit> {
+        @Override
+        public int compareTo(BudgetedCommit other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Commits of one region section waiting for their drain task. The list is only appended to inside
+     * {@code regionBatches.compute} and only read after the batch has been removed from the map.
+     */
+    private final class RegionBatch {
+        private final List<QueuedCommit<?>> commits = new ArrayList<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private void cancel(String message) {
+            for (QueuedCommit<?> commit : commits) {
+                commit.finish(new CancellationException(message));
+            }
+        }
+
+        private void fail(Throwable failure) {
+            for (QueuedCommit<?> commit : commits) {
+                commit.finish(failure);
+            }
+        }
+    }
+
+    /**
+     * A commit queued inside this scheduler, in a region batch or the budgeted lane, rather than handed to Paper
+     * as its own task. It takes the place of an {@link OwnerTask}, its pending-map entry and its Paper task.
+     */
+    private final class QueuedCommit<T> {
+        private final long generation;
+        private final Supplier<T> commit;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private QueuedCommit(long generation, Supplier<T> commit) {
+            this.generation = generation;
+            this.commit = commit;
+        }
+
+        private void run() {
+            try {
+                if (!active.get()
+                        || generation != PaperOwnerScheduler.this.generation
+                        || generation != generationSupplier.getAsLong()) {
+                    future.cancel(false);
+                    return;
+                }
+                future.complete(commit.get());
+            } catch (Throwable failure) {
+                future.completeExceptionally(failure);
+            } finally {
+                pendingCount.decrementAndGet();
+            }
+        }
+
+        private void finish(Throwable failure) {
+            future.completeExceptionally(failure);
+            pendingCount.decrementAndGet();
+        }
+    }
+
     private final class OwnerTask<T> implements Runnable {
         private static final int PENDING = 0;
         private static final int RUNNING = 1;
@@ -0,0 +1,123 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A tree submitted at a fixed rate by {@link AkiScheduler#submitPeriodic}. A run is skipped, not queued, while
+ * the previous one is still active, and submissions stop for good when the submission is cancelled, the
+ * scheduler stops or its generation changes.
+ */
+public final class PeriodicSubmission {
+    private final Supplier<? extends CompletionStage<TaskTreeResult>> launch;
+    private final long periodNanos;
+    private final long generation;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean active = new AtomicBoolean();
+    private final LongAdder submittedRuns = new LongAdder();
+    private final LongAdder skippedRuns = new LongAdder();
+    private final LongAdder rejectedRuns = new LongAdder();
+    private long dueNanos;
+
+    /**
+     * @param launch submits one run and returns its completion; runs on a worker
+     */
+    PeriodicSubmission(
+            Supplier<? extends CompletionStage<TaskTreeResult>> launch,
+            long firstDueNanos,
+            long periodNanos,
+            long generation
+    ) {
+        this.launch = launch;
+        this.dueNanos = firstDueNanos;
+        this.periodNanos = periodNanos;
+        this.generation = generation;
+    }
+
+    /**
+     * Stops further runs; a run already submitted finishes normally. Returns {@code false} if the submission
+     * was already stopped.
+     */
+    public boolean cancel() {
+        return cancelled.compareAndSet(false, true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    public long submittedRuns() {
+        return submittedRuns.sum();
+    }
+
+    /**
+     * Runs left out because the previous run was still active when they were due.
+     */
+    public long skippedRuns() {
+        return skippedRuns.sum();
+    }
+
+    /**
+     * Runs whose tree could not be built or was rejected for lack of capacity.
+     */
+    public long rejectedRuns() {
+        return rejectedRuns.sum();
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Due time of the next run; only the coordinator reads or advances it.
+     */
+    long dueNanos() {
+        return dueNanos;
+    }
+
+    /**
+     * Moves the due time one period on, or a full period past {@code nowNanos} when the coordinator fell behind,
+     * so missed runs are not made up in a burst.
+     */
+    void advance(long nowNanos) {
+        dueNanos += periodNanos;
+        if (dueNanos - nowNanos <= 0L) {
+            dueNanos = nowNanos + periodNanos;
+        }
+    }
+
+    /**
+     * Claims the next run unless the previous one is still active, counting it as skipped otherwise.
+     */
+    boolean tryStart() {
+        if (active.compareAndSet(false, true)) {
+            return true;
+        }
+        skippedRuns.increment();
+        return false;
+    }
+
+    /**
+     * Submits the claimed run and releases the claim once it finishes or fails to start.
+     */
+    void launch() {
+        CompletionStage<TaskTreeResult> completion;
+        try {
+            completion = launch.get();
+        } catch (RejectedExecutionException rejection) {
+            // Capacity may be back by the next period.
+            rejectedRuns.increment();
+            active.set(false);
+            return;
+        } catch (RuntimeException | Error failure) {
+            rejectedRuns.increment();
+            active.set(false);
+            throw failure;
+        }
+        submittedRuns.increment();
+        completion.whenComplete((result, failure) -> active.set(false));
+    }
+}
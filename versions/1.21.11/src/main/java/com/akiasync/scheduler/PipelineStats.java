@@ -0,0 +1,18 @@
+package com.akiasync.scheduler;
+
+/**
+ * Counters and stage latencies of one {@link TaskPipeline}. {@code discardedRuns} counts runs whose commit was
+ * skipped because the generation, the target or the snapshot went stale, or whose tree was cancelled.
+ */
+public record PipelineStats(
+        String name,
+        long submittedRuns,
+        long committedRuns,
+        long discardedRuns,
+        long failedRuns,
+        LatencySnapshot snapshot,
+        LatencySnapshot compute,
+        LatencySnapshot commit,
+        LatencySnapshot total
+) {
+}
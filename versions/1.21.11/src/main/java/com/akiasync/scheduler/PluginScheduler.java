@@ -0,0 +1,136 @@
+package com.akiasync.scheduler;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Submission view of {@link AkiScheduler} for one plugin. Trees submitted here count against the plugin's task
+ * quota and share compute time with other plugins by weight; see {@link AkiScheduler#forPlugin}.
+ */
+public final class PluginScheduler {
+    private final RedisTaskScheduler taskScheduler;
+    private final PluginShare share;
+
+    PluginScheduler(RedisTaskScheduler taskScheduler, PluginShare share) {
+        this.taskScheduler = taskScheduler;
+        this.share = share;
+    }
+
+    public String pluginName() {
+        return share.name();
+    }
+
+    public int weight() {
+        return share.weight();
+    }
+
+    public int maxOutstandingTasks() {
+        return share.quota();
+    }
+
+    public <T> TaskTreeHandle<T> submit(TaskTree<T> tree) {
+        return taskScheduler.submit(tree, share);
+    }
+
+    public <I, R> TemplateRunHandle<R> submit(TaskTreeTemplate<I, R> template, I input) {
+        return taskScheduler.submit(template, input, share);
+    }
+
+    public <T> CompletionStage<TaskTreeHandle<T>> submitAsync(TaskTree<T> tree) {
+        return taskScheduler.submitAsync(tree, -1L, share);
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> submitAsync(TaskTreeTemplate<I, R> template, I input) {
+        return taskScheduler.submitAsync(template, input, -1L, share);
+    }
+
+    public <T> CompletionStage<TaskTreeHandle<T>> trySubmit(TaskTree<T> tree, long timeout, TimeUnit unit) {
+        return taskScheduler.submitAsync(tree, AkiScheduler.timeoutNanos(timeout, unit), share);
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> trySubmit(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long timeout,
+            TimeUnit unit
+    ) {
+        return taskScheduler.submitAsync(template, input, AkiScheduler.timeoutNanos(timeout, unit), share);
+    }
+
+    /**
+     * Like {@link AkiScheduler#submitDelayed(TaskTree, long, TimeUnit)}; the tree is charged to this plugin when
+     * it is submitted.
+     */
+    public <T> CompletionStage<TaskTreeHandle<T>> submitDelayed(TaskTree<T> tree, long delay, TimeUnit unit) {
+        Objects.requireNonNull(tree, "tree");
+        return taskScheduler.submitDelayed(
+                () -> taskScheduler.submit(tree, share),
+                AkiScheduler.delayNanos(delay, unit)
+        );
+    }
+
+    public <I, R> CompletionStage<TemplateRunHandle<R>> submitDelayed(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long delay,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(template, "template");
+        return taskScheduler.submitDelayed(
+                () -> taskScheduler.submit(template, input, share),
+                AkiScheduler.delayNanos(delay, unit)
+        );
+    }
+
+    /**
+     * Like {@link AkiScheduler#submitPeriodic(Supplier, long, long, TimeUnit)}; every run counts against this
+     * plugin's quota, and a run over quota is counted as rejected.
+     */
+    public PeriodicSubmission submitPeriodic(
+            Supplier<? extends TaskTree<?>> trees,
+            long initialDelay,
+            long period,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(trees, "trees");
+        return taskScheduler.submitPeriodic(
+                () -> taskScheduler.submit(trees.get(), share).completion(),
+                AkiScheduler.delayNanos(initialDelay, unit),
+                AkiScheduler.periodNanos(period, unit)
+        );
+    }
+
+    public <I> PeriodicSubmission submitPeriodic(
+            TaskTreeTemplate<I, ?> template,
+            Supplier<? extends I> inputs,
+            long initialDelay,
+            long period,
+            TimeUnit unit
+    ) {
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(inputs, "inputs");
+        return taskScheduler.submitPeriodic(
+                () -> taskScheduler.submit(template, inputs.get(), share).completion(),
+                AkiScheduler.delayNanos(initialDelay, unit),
+                AkiScheduler.periodNanos(period, unit)
+        );
+    }
+
+    public TaskBatchHandle<TaskTreeHandle<?>> submitAll(Collection<? extends TaskTree<?>> trees) {
+        return taskScheduler.submitAll(trees, share);
+    }
+
+    public <I, R> TaskBatchHandle<TemplateRunHandle<R>> submitAll(
+            TaskTreeTemplate<I, R> template,
+            Collection<? extends I> inputs
+    ) {
+        return taskScheduler.submitAll(template, inputs, share);
+    }
+
+    public PluginShareSnapshot snapshot() {
+        return share.snapshot();
+    }
+}
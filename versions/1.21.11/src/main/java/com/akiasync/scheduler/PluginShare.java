@@ -0,0 +1,115 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One plugin's slice of the scheduler: its outstanding-task quota, its fair-queueing weight and its counters.
+ */
+final class PluginShare {
+    /**
+     * Nominal cost of one node on the virtual clock. A plugin with weight {@code w} advances its clock by
+     * {@code NODE_COST_NANOS / w} per dispatched node.
+     */
+    static final long NODE_COST_NANOS = 1_000_000L;
+
+    private final String name;
+    private final AtomicInteger outstandingTasks = new AtomicInteger();
+    private final AtomicLong virtualFinish = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder submittedTrees = new LongAdder();
+    private final LongAdder completedTrees = new LongAdder();
+    private final LongAdder rejectedTrees = new LongAdder();
+    private final LongAdder finishedTasks = new LongAdder();
+    private volatile int weight;
+    private volatile int quota;
+
+    PluginShare(String name, int weight, int quota) {
+        this.name = name;
+        configure(weight, quota);
+    }
+
+    String name() {
+        return name;
+    }
+
+    int weight() {
+        return weight;
+    }
+
+    int quota() {
+        return quota;
+    }
+
+    void configure(int nextWeight, int nextQuota) {
+        if (nextWeight < 1) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        if (nextQuota < 1) {
+            throw new IllegalArgumentException("quota must be positive");
+        }
+        weight = nextWeight;
+        quota = nextQuota;
+    }
+
+    boolean tryReserve(int nodeCount) {
+        while (true) {
+            int current = outstandingTasks.get();
+            if (nodeCount > quota - current) {
+                return false;
+            }
+            if (outstandingTasks.compareAndSet(current, current + nodeCount)) {
+                return true;
+            }
+        }
+    }
+
+    void release(int nodeCount) {
+        outstandingTasks.addAndGet(-nodeCount);
+    }
+
+    /**
+     * Returns the virtual finish tag for this plugin's next node. Tags follow the wall clock while the plugin is
+     * idle and run ahead of it while the plugin floods the queue, so a quiet plugin's next node sorts before the
+     * backlog of a busy one within the same priority.
+     */
+    long nextTag(long nowNanos) {
+        long cost = Math.max(1L, NODE_COST_NANOS / weight);
+        while (true) {
+            long previous = virtualFinish.get();
+            long tag = Math.max(previous, nowNanos) + cost;
+            if (virtualFinish.compareAndSet(previous, tag)) {
+                return tag;
+            }
+        }
+    }
+
+    void treeSubmitted() {
+        submittedTrees.increment();
+    }
+
+    void treeCompleted() {
+        completedTrees.increment();
+    }
+
+    void treesRejected(int trees) {
+        rejectedTrees.add(trees);
+    }
+
+    void taskFinished() {
+        finishedTasks.increment();
+    }
+
+    PluginShareSnapshot snapshot() {
+        return new PluginShareSnapshot(
+                name,
+                weight,
+                outstandingTasks.get(),
+                quota,
+                submittedTrees.sum(),
+                completedTrees.sum(),
+                rejectedTrees.sum(),
+                finishedTasks.sum()
+        );
+    }
+}
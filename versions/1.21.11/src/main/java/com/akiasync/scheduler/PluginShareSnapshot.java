@@ -0,0 +1,13 @@
+package com.akiasync.scheduler;
+
+public record PluginShareSnapshot(
+        String plugin,
+        int weight,
+        int outstandingTasks,
+        int taskQuota,
+        long submittedTrees,
+        long completedTrees,
+        long rejectedTrees,
+        long finishedTasks
+) {
+}
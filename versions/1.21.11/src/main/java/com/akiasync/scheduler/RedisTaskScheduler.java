@@ -5,15 +5,27 @@ import ca.spottedleaf.concurrentutil.executor.PrioritisedExecutor;
 import ca.spottedleaf.concurrentutil.executor.queue.PrioritisedTaskQueue;
 import ca.spottedleaf.concurrentutil.util.Priority;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -22,9 +34,20 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 final class RedisTaskScheduler implements AutoCloseable {
+    private static final int MAX_TRACKED_NODE_NAMES = 128;
+    private static final String OTHER_NODES = "<other>";
+    private static final Object AWAITING_SHARED = new Object();
+    private static final int MESSAGE_RING_SIZE = 256;
+    private static final SchedulerPriority[] PRIORITIES = SchedulerPriority.values();
+
     private final SchedulerConfig config;
     private final Consumer<Throwable> errorHandler;
     private final Object lifecycleLock = new Object();
@@ -35,11 +58,14 @@ final class RedisTaskScheduler implements AutoCloseable {
     private final AtomicInteger outstandingTasks = new AtomicInteger();
     private final AtomicInteger activeTrees = new AtomicInteger();
     private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final AtomicInteger runningBlockingTasks = new AtomicInteger();
+    private final AtomicInteger queuedBlockingTasks = new AtomicInteger();
     private final LongAdder submittedTrees = new LongAdder();
     private final LongAdder completedTrees = new LongAdder();
     private final LongAdder failedTrees = new LongAdder();
     private final LongAdder cancelledTrees = new LongAdder();
     private final LongAdder rejectedTrees = new LongAdder();
+    private final LongAdder deadlineMisses = new LongAdder();
     private final MultiThreadedQueue<Runnable> coordinatorQueue = new MultiThreadedQueue<>();
     private final Semaphore coordinatorSignal = new Semaphore(0);
     private final Semaphore computeSignal = new Semaphore(0);
@@ -48,21 +74,109 @@ final class RedisTaskScheduler implements AutoCloseable {
             0L,
             ignored -> computeSignal.release()
     );
-    private final Map<Long, TreeRun<?>> trees = new HashMap<>();
+    private final WorkStealingTaskQueue stealingQueue;
+    private final boolean workerCompletion;
+    private final Map<Long, TreeRun> trees = new ConcurrentHashMap<>();
+    private final NavigableSet<ReservationWaiter> waiters = new TreeSet<>(
+            Comparator.comparingInt((ReservationWaiter waiter) -> waiter.priority().ordinal())
+                    .thenComparingLong(ReservationWaiter::sequence)
+    );
+    private final Map<String, PluginShare> shares = new ConcurrentHashMap<>();
+    private final PluginShare defaultShare;
+    private long waiterSequence;
+    private volatile int waitingTrees;
     private final Thread coordinatorThread;
-    private final Thread[] workerThreads;
+    private final TaskWatchdog watchdog;
+    private final long nodeTimeoutNanos;
+    private final LongAdder retriedTasks = new LongAdder();
+    private final CoordinatorTimers timers = new CoordinatorTimers(
+            this::postControl,
+            this::queueLaunch,
+            generation::get,
+            this::isGenerationCurrent,
+            this::report
+    );
+    private final WorkerThread[] workerThreads;
+    private final ExecutorService blockingLane;
+    private final Semaphore blockingPermits;
+    private final TickClock tickClock;
+    private final long lowPriorityTickBudgetNanos;
+    private final MultiThreadedQueue<Runnable> deferredTasks = new MultiThreadedQueue<>();
+    private final AtomicInteger deferredCount = new AtomicInteger();
+    private final LongAdder throttledTasks = new LongAdder();
+    private final long priorityAgingNanos;
+    private final LongAdder agedTasks = new LongAdder();
+    private long lastAgingScanNanos;
+    private final long coordinatorWakeNanos;
+    private final Runnable tickEndListener = this::onTickEnd;
+    private final NodeLatency[] priorityLatency = new NodeLatency[SchedulerPriority.values().length];
+    private final Map<String, NodeLatency> nodeLatency = new ConcurrentHashMap<>();
+    private final TaskResultCache resultCache;
+    private final LongAdder forkedTasks = new LongAdder();
+    private final BooleanSupplier forkHelper = this::helpOnce;
+    private final MessageRing<NodeTask> coordinatorDispatches = new MessageRing<>(
+            new NodeTask[MESSAGE_RING_SIZE],
+            NodeTask::new
+    );
+    private volatile int activeWorkers;
+    private long lastWorkerEvaluationNanos;
     private final CountDownLatch coordinatorStopped = new CountDownLatch(1);
     private final AtomicBoolean workersStopping = new AtomicBoolean();
     private boolean coordinatorStopping;
 
     RedisTaskScheduler(String threadPrefix, SchedulerConfig config, Consumer<Throwable> errorHandler) {
+        this(threadPrefix, config, new TickClock(), errorHandler);
+    }
+
+    /**
+     * @param tickClock server tick timings; stays empty when the plugin runs without the profiler mixins
+     */
+    RedisTaskScheduler(
+            String threadPrefix,
+            SchedulerConfig config,
+            TickClock tickClock,
+            Consumer<Throwable> errorHandler
+    ) {
         Objects.requireNonNull(threadPrefix, "threadPrefix");
         this.config = Objects.requireNonNull(config, "config");
+        this.tickClock = Objects.requireNonNull(tickClock, "tickClock");
         this.errorHandler = Objects.requireNonNull(errorHandler, "errorHandler");
-        coordinatorThread = daemonThread(threadPrefix + "-Coordinator", this::coordinatorLoop);
-        workerThreads = new Thread[config.workerThreads()];
+        lowPriorityTickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(config.lowPriorityTickBudgetMillis());
+        priorityAgingNanos = TimeUnit.MILLISECONDS.toNanos(config.priorityAgingMillis());
+        coordinatorWakeNanos = config.agesPriorities()
+                ? Math.max(1L, Math.min(WorkerPoolPolicy.EVALUATION_INTERVAL_NANOS, priorityAgingNanos / 4L))
+                : WorkerPoolPolicy.EVALUATION_INTERVAL_NANOS;
+        for (int index = 0; index < priorityLatency.length; index++) {
+            priorityLatency[index] = new NodeLatency();
+        }
+        workerCompletion = config.completionMode() == CompletionMode.WORKER;
+        resultCache = new TaskResultCache(config.resultCacheSize());
+        // Kept out of shares, so a plugin named like the scheduler cannot reconfigure it.
+        defaultShare = new PluginShare(threadPrefix, 1, config.maxOutstandingTasks());
+        coordinatorThread = daemonThread(new Thread(this::coordinatorLoop, threadPrefix + "-Coordinator"));
+        watchdog = new TaskWatchdog(threadPrefix + "-Watchdog", trees.values(), this::abandonTree, this::report);
+        nodeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.nodeTimeoutMillis());
+        workerThreads = new WorkerThread[config.maxWorkerThreads()];
+        activeWorkers = config.workerThreads();
+        stealingQueue = config.computeMode() == ComputeMode.WORK_STEALING
+                ? new WorkStealingTaskQueue(workerThreads.length)
+                : null;
+        blockingLane = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadPrefix + "-IO-", 1).factory());
+        blockingPermits = new Semaphore(config.maxBlockingTasks(), true);
         for (int index = 0; index < workerThreads.length; index++) {
-            workerThreads[index] = daemonThread(threadPrefix + "-Worker-" + (index + 1), this::workerLoop);
+            int worker = index;
+            Runnable loop = stealingQueue == null ? () -> workerLoop(worker) : () -> stealingWorkerLoop(worker);
+            String name = threadPrefix + "-Worker-" + (index + 1);
+            workerThreads[index] = daemonThread(new WorkerThread(
+                    loop,
+                    name,
+                    index,
+                    new MessageRing<>(new NodeTask[MESSAGE_RING_SIZE], NodeTask::new),
+                    new MessageRing<>(new NodeOutcome[MESSAGE_RING_SIZE], NodeOutcome::new)
+            ));
+            if (stealingQueue != null) {
+                stealingQueue.bind(index, workerThreads[index]);
+            }
         }
     }
 
@@ -72,6 +186,9 @@ final class RedisTaskScheduler implements AutoCloseable {
                 throw new IllegalStateException("Scheduler can only be started once");
             }
             generation.incrementAndGet();
+            if (config.throttlesLowPriority()) {
+                tickClock.addTickEndListener(tickEndListener);
+            }
             coordinatorThread.start();
             for (Thread worker : workerThreads) {
                 worker.start();
@@ -79,42 +196,171 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
+    /**
+     * Returns the share registered under {@code name}, creating it or updating its weight and quota.
+     */
+    PluginShare share(String name, int weight, int quota) {
+        Objects.requireNonNull(name, "name");
+        if (quota > config.maxOutstandingTasks()) {
+            throw new IllegalArgumentException("quota cannot exceed maxOutstandingTasks");
+        }
+        PluginShare share = shares.computeIfAbsent(name, ignored -> new PluginShare(name, weight, quota));
+        share.configure(weight, quota);
+        return share;
+    }
+
     <T> TaskTreeHandle<T> submit(TaskTree<T> tree) {
+        return submit(tree, defaultShare);
+    }
+
+    <T> TaskTreeHandle<T> submit(TaskTree<T> tree, PluginShare share) {
         Objects.requireNonNull(tree, "tree");
+        Objects.requireNonNull(share, "share");
         TaskTree.PreparedTree<T> prepared = tree.prepare();
-        int nodeCount = prepared.nodes().size();
-        RejectedExecutionException rejection = null;
-        TreeRun<T> run = null;
-
-        synchronized (lifecycleLock) {
-            if (state.get() != SchedulerState.RUNNING) {
-                rejection = new RejectedExecutionException("Scheduler is not running");
-            } else if (nodeCount > config.maxTreeNodes()) {
-                rejection = new RejectedExecutionException(
-                        "Task tree contains " + nodeCount + " nodes; maximum is " + config.maxTreeNodes()
-                );
-            } else if (!reserve(nodeCount)) {
-                rejection = new RejectedExecutionException("Scheduler task capacity is exhausted");
-            } else {
-                long currentGeneration = generation.get();
-                run = new TreeRun<>(
-                        treeIds.incrementAndGet(),
-                        currentGeneration,
-                        prepared.root(),
-                        prepared.nodes()
-                );
-                TreeRun<T> accepted = run;
-                submittedTrees.increment();
-                postControl(() -> register(accepted));
+        TreeRun run;
+        try {
+            run = admit(prepared.plan(), null, prepared.nodes(), share);
+        } catch (RejectedExecutionException rejection) {
+            for (TaskNode<?> node : prepared.nodes()) {
+                node.reject(rejection);
             }
+            throw rejection;
         }
+        return treeHandle(run, prepared.root());
+    }
 
-        if (rejection != null) {
-            rejectedTrees.increment();
-            reject(prepared.nodes(), rejection);
+    /**
+     * Like {@link #submit(TaskTree)}, but waits for task capacity instead of rejecting the tree when the
+     * scheduler is saturated. Waiting trees are admitted in root-priority order as running nodes finish.
+     *
+     * @param timeoutNanos how long to wait for capacity, or a negative value to wait until shutdown
+     */
+    <T> CompletionStage<TaskTreeHandle<T>> submitAsync(TaskTree<T> tree, long timeoutNanos) {
+        return submitAsync(tree, timeoutNanos, defaultShare);
+    }
+
+    <T> CompletionStage<TaskTreeHandle<T>> submitAsync(TaskTree<T> tree, long timeoutNanos, PluginShare share) {
+        Objects.requireNonNull(tree, "tree");
+        Objects.requireNonNull(share, "share");
+        TaskTree.PreparedTree<T> prepared = tree.prepare();
+        return admitAsync(prepared.plan(), null, prepared.nodes(), share, timeoutNanos)
+                .thenApply(run -> treeHandle(run, prepared.root()))
+                .minimalCompletionStage();
+    }
+
+    <I, R> TemplateRunHandle<R> submit(TaskTreeTemplate<I, R> template, I input) {
+        return submit(template, input, defaultShare);
+    }
+
+    <I, R> TemplateRunHandle<R> submit(TaskTreeTemplate<I, R> template, I input, PluginShare share) {
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(share, "share");
+        return templateHandle(admit(template.plan(), input, null, share));
+    }
+
+    <I, R> CompletionStage<TemplateRunHandle<R>> submitAsync(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long timeoutNanos
+    ) {
+        return submitAsync(template, input, timeoutNanos, defaultShare);
+    }
+
+    <I, R> CompletionStage<TemplateRunHandle<R>> submitAsync(
+            TaskTreeTemplate<I, R> template,
+            I input,
+            long timeoutNanos,
+            PluginShare share
+    ) {
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(share, "share");
+        return admitAsync(template.plan(), input, null, share, timeoutNanos)
+                .thenApply(this::<R>templateHandle)
+                .minimalCompletionStage();
+    }
+
+    /**
+     * Submits several trees with one capacity reservation and one coordinator message. Like a single tree, the
+     * batch is admitted all or nothing.
+     */
+    TaskBatchHandle<TaskTreeHandle<?>> submitAll(Collection<? extends TaskTree<?>> batch) {
+        return submitAll(batch, defaultShare);
+    }
+
+    TaskBatchHandle<TaskTreeHandle<?>> submitAll(Collection<? extends TaskTree<?>> batch, PluginShare share) {
+        Objects.requireNonNull(batch, "batch");
+        Objects.requireNonNull(share, "share");
+        List<TaskTree.PreparedTree<?>> prepared = new ArrayList<>(batch.size());
+        for (TaskTree<?> tree : batch) {
+            prepared.add(Objects.requireNonNull(tree, "tree").prepare());
+        }
+        TaskPlan[] plans = new TaskPlan[prepared.size()];
+        for (int index = 0; index < plans.length; index++) {
+            plans[index] = prepared.get(index).plan();
+        }
+
+        TreeRun[] runs;
+        try {
+            runs = admitAll(plans, null, index -> prepared.get(index).nodes(), share);
+        } catch (RejectedExecutionException rejection) {
+            for (TaskTree.PreparedTree<?> tree : prepared) {
+                for (TaskNode<?> node : tree.nodes()) {
+                    node.reject(rejection);
+                }
+            }
             throw rejection;
         }
-        return run.handle();
+        List<TaskTreeHandle<?>> handles = new ArrayList<>(runs.length);
+        for (int index = 0; index < runs.length; index++) {
+            handles.add(treeHandle(runs[index], prepared.get(index).root()));
+        }
+        return batchHandle(runs, handles);
+    }
+
+    <I, R> TaskBatchHandle<TemplateRunHandle<R>> submitAll(
+            TaskTreeTemplate<I, R> template,
+            Collection<? extends I> inputs
+    ) {
+        return submitAll(template, inputs, defaultShare);
+    }
+
+    <I, R> TaskBatchHandle<TemplateRunHandle<R>> submitAll(
+            TaskTreeTemplate<I, R> template,
+            Collection<? extends I> inputs,
+            PluginShare share
+    ) {
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(inputs, "inputs");
+        Objects.requireNonNull(share, "share");
+        TaskPlan[] plans = new TaskPlan[inputs.size()];
+        Arrays.fill(plans, template.plan());
+        TreeRun[] runs = admitAll(plans, inputs.toArray(), index -> null, share);
+        List<TemplateRunHandle<R>> handles = new ArrayList<>(runs.length);
+        for (TreeRun run : runs) {
+            handles.add(templateHandle(run));
+        }
+        return batchHandle(runs, handles);
+    }
+
+    /**
+     * Runs {@code submission} on a worker once {@code delayNanos} have passed and completes the returned future
+     * with its result. The future fails with a {@link CancellationException} when the scheduler stops or its
+     * generation changes first; cancelling it drops the submission.
+     */
+    <H> CompletableFuture<H> submitDelayed(Supplier<? extends H> submission, long delayNanos) {
+        return timers.submitDelayed(submission, delayNanos);
+    }
+
+    /**
+     * Starts a run through {@code launch} every {@code periodNanos}, first after {@code initialDelayNanos}.
+     * Timing is kept by the coordinator and {@code launch} runs on a worker.
+     */
+    PeriodicSubmission submitPeriodic(
+            Supplier<? extends CompletionStage<TaskTreeResult>> launch,
+            long initialDelayNanos,
+            long periodNanos
+    ) {
+        return timers.submitPeriodic(launch, initialDelayNanos, periodNanos);
     }
 
     boolean isGenerationCurrent(long expectedGeneration) {
@@ -125,34 +371,81 @@ final class RedisTaskScheduler implements AutoCloseable {
         return generation.get();
     }
 
+    SchedulerConfig config() {
+        return config;
+    }
+
+    private Map<SchedulerPriority, LatencyBreakdown> priorityLatency() {
+        Map<SchedulerPriority, LatencyBreakdown> snapshot = new EnumMap<>(SchedulerPriority.class);
+        for (SchedulerPriority priority : SchedulerPriority.values()) {
+            snapshot.put(priority, priorityLatency[priority.ordinal()].snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private Map<String, LatencyBreakdown> nodeLatency() {
+        Map<String, LatencyBreakdown> snapshot = new TreeMap<>();
+        nodeLatency.forEach((name, latency) -> snapshot.put(name, latency.snapshot()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
     SchedulerSnapshot snapshot(int pendingOwnerTasks) {
+        return snapshot(pendingOwnerTasks, 0, 0L);
+    }
+
+    SchedulerSnapshot snapshot(int pendingOwnerTasks, int carriedCommits, long deferredCommits) {
         int busy = runningWorkers.get();
-        long queued = Math.max(
-                0L,
-                computeQueue.getTotalTasksScheduled() - computeQueue.getTotalTasksExecuted() - busy
-        );
         return new SchedulerSnapshot(
                 state.get(),
                 generation.get(),
+                config.computeMode(),
+                config.completionMode(),
+                activeWorkers,
                 workerThreads.length,
+                tickClock.averageTickNanos(),
                 busy,
                 activeTrees.get(),
+                waitingTrees,
                 outstandingTasks.get(),
                 config.maxOutstandingTasks(),
-                queued,
+                queuedComputeTasks(busy),
+                stealingQueue == null ? 0L : stealingQueue.steals(),
+                runningBlockingTasks.get(),
+                queuedBlockingTasks.get(),
+                deferredCount.get(),
+                throttledTasks.sum(),
+                agedTasks.sum(),
                 coordinatorQueue.size(),
                 pendingOwnerTasks,
+                carriedCommits,
+                deferredCommits,
                 submittedTrees.sum(),
                 completedTrees.sum(),
                 failedTrees.sum(),
                 cancelledTrees.sum(),
-                rejectedTrees.sum()
+                rejectedTrees.sum(),
+                deadlineMisses.sum(),
+                watchdog.timedOutTasks(),
+                retriedTasks.sum(),
+                timers.pendingSubmissions(),
+                resultCache.size(),
+                resultCache.hits(),
+                resultCache.sharedExecutions(),
+                forkedTasks.sum(),
+                watchdog.stuckTasks(),
+                Stream.concat(Stream.of(defaultShare), shares.values().stream())
+                        .map(PluginShare::snapshot)
+                        .sorted(Comparator.comparing(PluginShareSnapshot::plugin))
+                        .toList(),
+                priorityLatency(),
+                nodeLatency()
         );
     }
 
     @Override
     public void close() {
         long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.shutdownWaitMillis());
+        List<ReservationWaiter> abandoned;
         synchronized (lifecycleLock) {
             SchedulerState current = state.get();
             if (current == SchedulerState.STOPPED || current == SchedulerState.STOPPING) {
@@ -165,208 +458,1001 @@ final class RedisTaskScheduler implements AutoCloseable {
             }
             state.set(SchedulerState.STOPPING);
             generation.incrementAndGet();
+            tickClock.removeTickEndListener(tickEndListener);
             postControl(this::beginCoordinatorShutdown);
+            abandoned = new ArrayList<>(waiters);
+            waiters.clear();
+            waitingTrees = 0;
+        }
+
+        for (ReservationWaiter waiter : abandoned) {
+            rejectedTrees.increment();
+            waiter.share().treesRejected(1);
+            RejectedExecutionException rejection = new RejectedExecutionException("Scheduler is stopping");
+            rejectWaiter(waiter.observers(), waiter.admitted(), rejection);
         }
+        timers.cancelSubmissions();
 
         awaitCoordinator(deadline);
         computeQueue.shutdown();
         workersStopping.set(true);
-        computeSignal.release(workerThreads.length);
+        watchdog.stop();
+        if (stealingQueue != null) {
+            stealingQueue.shutdown();
+        } else {
+            computeSignal.release(workerThreads.length);
+        }
+        for (Thread worker : workerThreads) {
+            LockSupport.unpark(worker);
+        }
         joinWorkers(deadline);
+        stopBlockingLane(deadline);
         coordinatorQueue.clear();
+        deferredTasks.clear();
+        deferredCount.set(0);
+        resultCache.clear();
         state.set(SchedulerState.STOPPED);
     }
 
-    private void register(TreeRun<?> tree) {
-        trees.put(tree.id, tree);
-        activeTrees.incrementAndGet();
-        for (TaskNode<?> node : tree.nodes) {
-            node.stateReference().set(TaskState.WAITING);
+    private TreeRun admit(TaskPlan plan, Object input, TaskNode<?>[] observers, PluginShare share) {
+        RejectedExecutionException rejection;
+        synchronized (lifecycleLock) {
+            rejection = admissionFailure(plan.size(), share);
+            if (rejection == null) {
+                rejection = reserve(plan.size(), share);
+                if (rejection == null) {
+                    return accept(plan, input, observers, share, System.nanoTime());
+                }
+            }
         }
+        rejectedTrees.increment();
+        share.treesRejected(1);
+        throw rejection;
+    }
+
+    private CompletableFuture<TreeRun> admitAsync(
+            TaskPlan plan,
+            Object input,
+            TaskNode<?>[] observers,
+            PluginShare share,
+            long timeoutNanos
+    ) {
+        CompletableFuture<TreeRun> admitted = new CompletableFuture<>();
+        RejectedExecutionException rejection;
+        synchronized (lifecycleLock) {
+            rejection = admissionFailure(plan.size(), share);
+            if (rejection == null) {
+                // Waiting trees keep their place: a new tree only bypasses the queue when nothing is waiting.
+                if (waiters.isEmpty()) {
+                    rejection = reserve(plan.size(), share);
+                    if (rejection == null) {
+                        admitted.complete(accept(plan, input, observers, share, System.nanoTime()));
+                        return admitted;
+                    }
+                } else {
+                    rejection = new RejectedExecutionException("Scheduler task capacity is exhausted");
+                }
+                if (timeoutNanos != 0L) {
+                    ReservationWaiter waiter = new ReservationWaiter(
+                            plan,
+                            input,
+                            observers,
+                            share,
+                            plan.priority(0),
+                            waiterSequence++,
+                            System.nanoTime(),
+                            admitted
+                    );
+                    waiters.add(waiter);
+                    waitingTrees = waiters.size();
+                    if (timeoutNanos > 0L) {
+                        CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS)
+                                .execute(() -> expire(waiter));
+                    }
+                    return admitted;
+                }
+            }
+        }
+        rejectedTrees.increment();
+        share.treesRejected(1);
+        rejectWaiter(observers, admitted, rejection);
+        return admitted;
+    }
+
+    private TreeRun[] admitAll(
+            TaskPlan[] plans,
+            Object[] inputs,
+            IntFunction<TaskNode<?>[]> observers,
+            PluginShare share
+    ) {
+        if (plans.length == 0) {
+            throw new IllegalArgumentException("A batch needs at least one tree");
+        }
+        RejectedExecutionException rejection = null;
+        synchronized (lifecycleLock) {
+            long nodeCount = 0L;
+            for (TaskPlan plan : plans) {
+                rejection = admissionFailure(plan.size(), share);
+                if (rejection != null) {
+                    break;
+                }
+                nodeCount += plan.size();
+            }
+            if (rejection == null && nodeCount > config.maxOutstandingTasks()) {
+                rejection = new RejectedExecutionException(
+                        "Scheduler task capacity is exhausted for a batch of " + nodeCount + " tasks"
+                );
+            }
+            if (rejection == null) {
+                rejection = reserve((int) nodeCount, share);
+                if (rejection == null) {
+                    TaskBatch batch = new TaskBatch(treeIds.get() + 1L, generation.get(), plans.length);
+                    long submittedNanos = System.nanoTime();
+                    TreeRun[] runs = new TreeRun[plans.length];
+                    for (int index = 0; index < plans.length; index++) {
+                        Object input = inputs == null ? null : inputs[index];
+                        runs[index] = newRun(
+                                plans[index],
+                                input,
+                                observers.apply(index),
+                                batch,
+                                share,
+                                submittedNanos
+                        );
+                    }
+                    postControl(() -> {
+                        for (TreeRun run : runs) {
+                            register(run);
+                        }
+                    });
+                    return runs;
+                }
+            }
+        }
+        rejectedTrees.add(plans.length);
+        share.treesRejected(plans.length);
+        throw rejection;
+    }
+
+    private <H> TaskBatchHandle<H> batchHandle(TreeRun[] runs, List<H> handles) {
+        return new TaskBatchHandle<>(
+                Collections.unmodifiableList(handles),
+                runs[0].batch().completion().minimalCompletionStage(),
+                () -> {
+                    List<TreeRun> cancelled = new ArrayList<>();
+                    for (TreeRun run : runs) {
+                        if (!run.isFinished() && run.requestCancellation()) {
+                            cancelled.add(run);
+                        }
+                    }
+                    if (cancelled.isEmpty()) {
+                        return false;
+                    }
+                    postControl(() -> {
+                        for (TreeRun run : cancelled) {
+                            cancelTree(run);
+                        }
+                    });
+                    return true;
+                }
+        );
+    }
+
+    private RejectedExecutionException admissionFailure(int nodeCount, PluginShare share) {
+        if (state.get() != SchedulerState.RUNNING) {
+            return new RejectedExecutionException("Scheduler is not running");
+        }
+        if (nodeCount > config.maxTreeNodes()) {
+            return new RejectedExecutionException(
+                    "Task tree contains " + nodeCount + " nodes; maximum is " + config.maxTreeNodes()
+            );
+        }
+        if (nodeCount > share.quota()) {
+            return new RejectedExecutionException(
+                    "Task tree contains " + nodeCount + " nodes; quota of " + share.name() + " is " + share.quota()
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Creates and registers a run whose capacity is already reserved; callers hold {@link #lifecycleLock}.
+     */
+    private TreeRun accept(
+            TaskPlan plan,
+            Object input,
+            TaskNode<?>[] observers,
+            PluginShare share,
+            long submittedNanos
+    ) {
+        TreeRun run = newRun(plan, input, observers, null, share, submittedNanos);
+        postControl(() -> register(run));
+        return run;
+    }
+
+    private TreeRun newRun(
+            TaskPlan plan,
+            Object input,
+            TaskNode<?>[] observers,
+            TaskBatch batch,
+            PluginShare share,
+            long submittedNanos
+    ) {
+        TreeRun run = new TreeRun(
+                treeIds.incrementAndGet(),
+                generation.get(),
+                plan,
+                input,
+                observers,
+                batch,
+                share,
+                submittedNanos,
+                plan.deadlineOffsets(submittedNanos, tickClock),
+                nodeTimeoutNanos,
+                stealingQueue != null
+        );
+        if (observers != null) {
+            for (TaskNode<?> node : observers) {
+                node.bind(run);
+            }
+        }
+        submittedTrees.increment();
+        share.treeSubmitted();
+        return run;
+    }
+
+    /**
+     * Hands freed capacity to waiting trees in strict priority order. A waiter held back only by its own plugin's
+     * quota is passed over, so one plugin at its quota cannot stall the others.
+     */
+    private void admitWaiters() {
+        synchronized (lifecycleLock) {
+            Iterator<ReservationWaiter> iterator = waiters.iterator();
+            while (state.get() == SchedulerState.RUNNING && iterator.hasNext()) {
+                ReservationWaiter waiter = iterator.next();
+                PluginShare share = waiter.share();
+                int nodeCount = waiter.plan().size();
+                if (!share.tryReserve(nodeCount)) {
+                    continue;
+                }
+                if (!reserve(nodeCount)) {
+                    share.release(nodeCount);
+                    break;
+                }
+                iterator.remove();
+                waitingTrees = waiters.size();
+                TreeRun run = accept(
+                        waiter.plan(),
+                        waiter.input(),
+                        waiter.observers(),
+                        share,
+                        waiter.submittedNanos()
+                );
+                CompletableFuture<TreeRun> admitted = waiter.admitted();
+                publishCompletion(() -> admitted.complete(run));
+            }
+        }
+    }
+
+    private void expire(ReservationWaiter waiter) {
+        synchronized (lifecycleLock) {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            waitingTrees = waiters.size();
+        }
+        rejectedTrees.increment();
+        waiter.share().treesRejected(1);
+        rejectWaiter(
+                waiter.observers(),
+                waiter.admitted(),
+                new RejectedExecutionException("Timed out waiting for scheduler task capacity")
+        );
+    }
+
+    private static void rejectWaiter(
+            TaskNode<?>[] observers,
+            CompletableFuture<TreeRun> admitted,
+            RejectedExecutionException rejection
+    ) {
+        if (observers != null) {
+            for (TaskNode<?> node : observers) {
+                node.reject(rejection);
+            }
+        }
+        admitted.completeExceptionally(rejection);
+    }
+
+    private <T> TaskTreeHandle<T> treeHandle(TreeRun run, TaskNode<T> root) {
+        return new TaskTreeHandle<>(
+                run.id(),
+                run.generation(),
+                root,
+                run.completion().minimalCompletionStage(),
+                cancellation(run)
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> TemplateRunHandle<R> templateHandle(TreeRun run) {
+        return new TemplateRunHandle<>(
+                run.id(),
+                run.generation(),
+                (CompletionStage<R>) (CompletionStage<?>) run.output().minimalCompletionStage(),
+                run.completion().minimalCompletionStage(),
+                cancellation(run)
+        );
+    }
+
+    private BooleanSupplier cancellation(TreeRun run) {
+        return () -> {
+            if (run.isFinished() || !run.requestCancellation()) {
+                return false;
+            }
+            postControl(() -> cancelTree(run));
+            return true;
+        };
+    }
+
+    private void register(TreeRun run) {
+        trees.put(run.id(), run);
+        activeTrees.incrementAndGet();
+        watchdog.treeRegistered(run);
+        run.markWaiting();
         if (state.get() != SchedulerState.RUNNING
-                || tree.generation != generation.get()
-                || tree.cancellationRequested.get()) {
-            cancelTree(tree);
+                || run.generation() != generation.get()
+                || run.isCancellationRequested()) {
+            cancelTree(run);
             return;
         }
-        dispatch(tree, tree.root);
+        dispatch(run, 0, -1);
     }
 
-    private void dispatch(TreeRun<?> tree, TaskNode<?> node) {
-        if (state.get() != SchedulerState.RUNNING || tree.cancellationRequested.get()) {
-            cancelTree(tree);
+    private void dispatch(TreeRun run, int node, int preferredWorker) {
+        if (state.get() != SchedulerState.RUNNING || run.isCancellationRequested() || missedDeadline(run, node)) {
+            cancelTree(run);
             return;
         }
-        if (!node.stateReference().compareAndSet(TaskState.WAITING, TaskState.QUEUED)) {
+        if (!run.compareAndSetState(node, TaskState.WAITING, TaskState.QUEUED)) {
             return;
         }
 
-        node.taskId(taskIds.incrementAndGet());
+        run.taskId(node, taskIds.incrementAndGet());
+        run.queuedNanos(node, System.nanoTime());
         try {
-            PrioritisedExecutor.PrioritisedTask task = computeQueue.createTask(
-                    () -> execute(tree, node),
-                    node.priority().delegate()
-            );
-            node.queuedTask(task);
-            task.queue();
+            enqueue(run, node, preferredWorker, stealingQueue == null ? run.share().nextTag(System.nanoTime()) : 0L);
         } catch (RuntimeException | Error failure) {
-            completeFailure(tree, node, failure);
+            completeFailure(run, node, failure);
         }
     }
 
-    private void execute(TreeRun<?> tree, TaskNode<?> node) {
-        if (!node.stateReference().compareAndSet(TaskState.QUEUED, TaskState.RUNNING)) {
+    /**
+     * A node with a deadline sorts by that deadline when it is earlier than {@code order}, so nodes whose deadlines
+     * are closer than the fair-share backlog run earliest-deadline-first.
+     */
+    private void enqueue(TreeRun run, int node, int preferredWorker, long order) {
+        if (run.plan().blocking(node)) {
+            queuedBlockingTasks.incrementAndGet();
+            try {
+                blockingLane.execute(() -> executeBlocking(run, node));
+            } catch (RejectedExecutionException rejection) {
+                queuedBlockingTasks.decrementAndGet();
+                throw rejection;
+            }
             return;
         }
-        runningWorkers.incrementAndGet();
-        TaskExecutionContext context = new TaskExecutionContext(
-                tree.id,
-                node.taskId(),
-                tree.generation,
-                () -> tree.cancellationRequested.get() || !isGenerationCurrent(tree.generation)
-        );
+        SchedulerPriority priority = queuedPriority(run, node);
+        if (stealingQueue != null) {
+            stealingQueue.push(nodeTask(run, node), WorkStealingTaskQueue.level(priority), preferredWorker);
+            return;
+        }
+        if (run.hasDeadline(node) && run.deadlineNanos(node) - order < 0L) {
+            order = run.deadlineNanos(node);
+        }
+        NodeTask message = nodeTask(run, node);
+        PrioritisedExecutor.PrioritisedTask task = computeQueue.createTask(message, priority.delegate(), order);
+        message.queued = task;
+        run.queuedTask(node, message);
+        task.queue();
+    }
+
+    private static SchedulerPriority queuedPriority(TreeRun run, int node) {
+        return PRIORITIES[run.plan().priority(node).ordinal() - run.promotions(node)];
+    }
+
+    private void executeBlocking(TreeRun run, int node) {
+        try {
+            if (run.state(node) != TaskState.QUEUED) {
+                return;
+            }
+            blockingPermits.acquire();
+        } catch (InterruptedException interrupted) {
+            return;
+        } finally {
+            queuedBlockingTasks.decrementAndGet();
+        }
+        try {
+            execute(run, node);
+        } catch (Throwable failure) {
+            report(failure);
+        } finally {
+            blockingPermits.release();
+        }
+    }
+
+    private boolean deferForTick(TreeRun run, int node) {
+        if (lowPriorityTickBudgetNanos == 0L
+                || queuedPriority(run, node).ordinal() < SchedulerPriority.LOW.ordinal()
+                || tickClock.currentTickNanos() <= lowPriorityTickBudgetNanos
+                || state.get() != SchedulerState.RUNNING) {
+            return false;
+        }
+        deferredCount.incrementAndGet();
+        throttledTasks.increment();
+        deferredTasks.offer(() -> {
+            if (run.state(node) == TaskState.QUEUED) {
+                enqueue(run, node, -1, System.nanoTime());
+            }
+        });
+        return true;
+    }
+
+    private void onTickEnd() {
+        if (deferredCount.get() > 0) {
+            postControl(this::releaseDeferred);
+        }
+    }
+
+    private void releaseDeferred() {
+        Runnable release;
+        while ((release = deferredTasks.poll()) != null) {
+            deferredCount.decrementAndGet();
+            try {
+                release.run();
+            } catch (Throwable failure) {
+                report(failure);
+            }
+        }
+    }
+
+    private void execute(TreeRun run, int node) {
+        if (deferForTick(run, node)) {
+            return;
+        }
+        if (!run.compareAndSetState(node, TaskState.QUEUED, TaskState.RUNNING)) {
+            return;
+        }
+        AtomicInteger running = run.plan().blocking(node) ? runningBlockingTasks : runningWorkers;
+        running.incrementAndGet();
+        long startedNanos = System.nanoTime();
+        NodeLatency byPriority = priorityLatency[run.plan().priority(node).ordinal()];
+        NodeLatency byName = nodeLatency(run.plan().name(node));
+        long queueWait = startedNanos - run.queuedNanos(node);
+        byPriority.queueWait.record(queueWait);
+        byName.queueWait.record(queueWait);
+        WorkerThread worker = Thread.currentThread() instanceof WorkerThread current ? current : null;
+        if (worker != null) {
+            run.executingWorker(node, worker.index);
+        }
+        long timeout = run.timeoutNanos(node);
+        if (timeout > 0L) {
+            run.watch(node, Thread.currentThread(), startedNanos);
+        }
+        NodeScope scope = enterScope(worker);
+        TaskExecutionContext context = scope.bind(run, node, byName);
         try {
+            if (missedDeadline(run, node)) {
+                abandonTree(run);
+            }
             context.checkCancellation();
-            Object value = node.compute(context);
+            Object value = compute(run, node, context, byPriority, byName, startedNanos);
+            if (value == AWAITING_SHARED) {
+                return;
+            }
             context.checkCancellation();
-            postControl(() -> completeSuccess(tree, node, value));
+            long finishedNanos = recordExecution(byPriority, byName, startedNanos);
+            commitOutcome(TaskState.SUCCEEDED, run, node, value, byPriority, byName, finishedNanos);
         } catch (CancellationException cancellation) {
-            postControl(() -> completeCancellation(tree, node));
+            long finishedNanos = recordExecution(byPriority, byName, startedNanos);
+            if (missedDeadline(run, node)) {
+                abandonTree(run);
+            }
+            commitOutcome(TaskState.CANCELLED, run, node, null, byPriority, byName, finishedNanos);
         } catch (Throwable failure) {
-            postControl(() -> completeFailure(tree, node, failure));
+            long finishedNanos = recordExecution(byPriority, byName, startedNanos);
+            commitOutcome(TaskState.FAILED, run, node, failure, byPriority, byName, finishedNanos);
         } finally {
-            runningWorkers.decrementAndGet();
+            if (timeout > 0L) {
+                run.unwatch(node, Thread.currentThread());
+            }
+            exitScope(worker, scope);
+            running.decrementAndGet();
         }
     }
 
-    private void completeSuccess(TreeRun<?> tree, TaskNode<?> node, Object value) {
-        if (node.state() != TaskState.RUNNING) {
-            return;
+    private NodeScope enterScope(WorkerThread worker) {
+        if (worker == null) {
+            return new NodeScope();
+        }
+        int depth = worker.scopeDepth++;
+        if (depth == worker.scopes.length) {
+            worker.scopes = Arrays.copyOf(worker.scopes, depth * 2);
         }
-        if (tree.cancellationRequested.get() || tree.generation != generation.get()) {
-            completeCancellation(tree, node);
+        NodeScope scope = worker.scopes[depth];
+        if (scope == null) {
+            scope = new NodeScope();
+            worker.scopes[depth] = scope;
+        }
+        return scope;
+    }
+
+    private static void exitScope(WorkerThread worker, NodeScope scope) {
+        scope.unbind();
+        if (worker != null) {
+            worker.scopeDepth--;
+        }
+    }
+
+    private void commitOutcome(
+            TaskState outcome,
+            TreeRun run,
+            int node,
+            Object result,
+            NodeLatency byPriority,
+            NodeLatency byName,
+            long finishedNanos
+    ) {
+        if (workerCompletion) {
+            recordCommit(byPriority, byName, finishedNanos);
+            applyOutcome(outcome, run, node, result);
             return;
         }
+        NodeOutcome message = Thread.currentThread() instanceof WorkerThread worker ? worker.outcomes.claim() : null;
+        if (message == null) {
+            message = new NodeOutcome();
+        }
+        message.outcome = outcome;
+        message.run = run;
+        message.node = node;
+        message.result = result;
+        message.byPriority = byPriority;
+        message.byName = byName;
+        message.finishedNanos = finishedNanos;
+        postControl(message);
+    }
 
-        node.value(value);
-        node.stateReference().set(TaskState.SUCCEEDED);
-        publishCompletion(() -> node.completeResult(value));
-        finishNode(tree, TaskState.SUCCEEDED);
-        for (TaskNode<?> child : node.children()) {
-            dispatch(tree, child);
+    private void applyOutcome(TaskState outcome, TreeRun run, int node, Object result) {
+        switch (outcome) {
+            case SUCCEEDED -> completeSuccess(run, node, result);
+            case CANCELLED -> completeCancellation(run, node);
+            case FAILED -> failOrRetry(run, node, (Throwable) result);
+            default -> retryShared(run, node);
         }
     }
 
-    private void completeFailure(TreeRun<?> tree, TaskNode<?> node, Throwable failure) {
-        TaskState current = node.state();
-        if (current.isTerminal()) {
+    private NodeTask nodeTask(TreeRun run, int node) {
+        Thread current = Thread.currentThread();
+        NodeTask task = null;
+        if (current instanceof WorkerThread worker) {
+            task = worker.dispatches.claim();
+        } else if (current == coordinatorThread) {
+            task = coordinatorDispatches.claim();
+        }
+        if (task == null) {
+            task = new NodeTask();
+        }
+        task.run = run;
+        task.node = node;
+        return task;
+    }
+
+    /**
+     * A keyed node that follows an identical running node returns {@link #AWAITING_SHARED} instead of holding its
+     * worker; {@link #completeShared} finishes it.
+     */
+    private Object compute(
+            TreeRun run,
+            int node,
+            TaskExecutionContext context,
+            NodeLatency byPriority,
+            NodeLatency byName,
+            long startedNanos
+    ) throws Exception {
+        TaskPlan plan = run.plan();
+        TaskPlan.CacheKey cacheKey = plan.cacheKey(node);
+        Object key = cacheKey == null ? null : cacheKey.key().apply(run);
+        if (key == null) {
+            return plan.step(node).run(run, context);
+        }
+        TaskResultCache.Claim claim = resultCache.claim(plan.name(node), key, cacheKey.generation().applyAsLong(run));
+        TaskResultCache.Entry entry = claim.entry();
+        if (claim.owned()) {
+            Object value;
+            try {
+                value = plan.step(node).run(run, context);
+            } catch (Throwable failure) {
+                resultCache.fail(entry, failure);
+                throw failure;
+            }
+            // Published before this run's own cancellation check: the value is valid whatever happens to the tree.
+            resultCache.complete(entry, value);
+            return value;
+        }
+        CompletableFuture<Object> shared = entry.result();
+        if (shared.isDone() && !shared.isCompletedExceptionally()) {
+            return shared.join();
+        }
+        shared.whenComplete((value, failure) ->
+                completeShared(run, node, value, failure, byPriority, byName, startedNanos));
+        return AWAITING_SHARED;
+    }
+
+    private void completeShared(
+            TreeRun run,
+            int node,
+            Object value,
+            Throwable failure,
+            NodeLatency byPriority,
+            NodeLatency byName,
+            long startedNanos
+    ) {
+        long finishedNanos = recordExecution(byPriority, byName, startedNanos);
+        Throwable cause = failure instanceof CompletionException wrapped && wrapped.getCause() != null
+                ? wrapped.getCause()
+                : failure;
+        if (missedDeadline(run, node)) {
+            abandonTree(run);
+        }
+        if (cause == null) {
+            commitOutcome(TaskState.SUCCEEDED, run, node, value, byPriority, byName, finishedNanos);
+        } else if (cause instanceof CancellationException) {
+            commitOutcome(TaskState.QUEUED, run, node, null, byPriority, byName, finishedNanos);
+        } else {
+            commitOutcome(TaskState.FAILED, run, node, cause, byPriority, byName, finishedNanos);
+        }
+    }
+
+    /**
+     * A retried node stays reserved and waits out its backoff in {@link TaskState#WAITING}, so a copy of it still
+     * sitting in a queue cannot run it early.
+     */
+    private void failOrRetry(TreeRun run, int node, Throwable failure) {
+        RetryPolicy policy = run.plan().retryPolicy(node);
+        if (policy == null
+                || state.get() != SchedulerState.RUNNING
+                || run.isCancellationRequested()
+                || run.generation() != generation.get()
+                || !policy.retries(failure, run.failedAttempts(node) + 1)) {
+            completeFailure(run, node, failure);
             return;
         }
-        PrioritisedExecutor.PrioritisedTask queued = node.queuedTask();
-        if (current == TaskState.QUEUED && queued != null) {
-            queued.cancel();
+        if (!run.compareAndSetState(node, TaskState.RUNNING, TaskState.WAITING)) {
+            return;
         }
-        node.stateReference().set(TaskState.FAILED);
-        publishCompletion(() -> node.failResult(failure));
-        finishNode(tree, TaskState.FAILED);
-        skipDescendants(tree, node, failure);
+        int retry = run.attemptFailed(node);
+        retriedTasks.increment();
+        long dueNanos = System.nanoTime() + policy.backoffNanos(retry);
+        timers.schedule(dueNanos, () -> dispatch(run, node, -1));
     }
 
-    private void completeCancellation(TreeRun<?> tree, TaskNode<?> node) {
-        if (node.state().isTerminal()) {
+    private void retryShared(TreeRun run, int node) {
+        if (state.get() != SchedulerState.RUNNING || run.isCancellationRequested()) {
+            completeCancellation(run, node);
+            return;
+        }
+        if (!run.compareAndSetState(node, TaskState.RUNNING, TaskState.QUEUED)) {
             return;
         }
-        node.stateReference().set(TaskState.CANCELLED);
-        publishCompletion(node::cancelResult);
-        finishNode(tree, TaskState.CANCELLED);
+        run.queuedNanos(node, System.nanoTime());
+        try {
+            enqueue(run, node, -1, System.nanoTime());
+        } catch (RuntimeException | Error failure) {
+            completeFailure(run, node, failure);
+        }
     }
 
-    private void skipDescendants(TreeRun<?> tree, TaskNode<?> failedNode, Throwable failure) {
-        ArrayDeque<TaskNode<?>> pending = new ArrayDeque<>(failedNode.children());
-        while (!pending.isEmpty()) {
-            TaskNode<?> node = pending.removeFirst();
-            if (!node.state().isTerminal()) {
-                node.stateReference().set(TaskState.SKIPPED);
-                IllegalStateException skipped = new IllegalStateException(
-                        "Task '" + node.name() + "' was skipped because an ancestor failed",
-                        failure
+    private <R> TaskFork<R> fork(
+            TreeRun run,
+            int node,
+            TaskExecutionContext context,
+            TaskFork.Action<? extends R> action
+    ) {
+        PluginShare share = run.share();
+        if (state.get() != SchedulerState.RUNNING || reserve(1, share) != null) {
+            return new TaskFork<>(action, context, null, forkHelper);
+        }
+        TaskFork<R> fork = new TaskFork<>(action, context, () -> releaseFork(share), forkHelper);
+        forkedTasks.increment();
+        SchedulerPriority priority = run.plan().priority(node);
+        try {
+            if (stealingQueue != null) {
+                int worker = Thread.currentThread() instanceof WorkerThread current ? current.index : -1;
+                stealingQueue.push(fork::run, WorkStealingTaskQueue.level(priority), worker);
+            } else {
+                PrioritisedExecutor.PrioritisedTask task = computeQueue.createTask(
+                        fork::run,
+                        priority.delegate(),
+                        share.nextTag(System.nanoTime())
                 );
-                publishCompletion(() -> node.failResult(skipped));
-                finishNode(tree, TaskState.SKIPPED);
+                fork.dequeue(task::cancel);
+                task.queue();
             }
-            pending.addAll(node.children());
+        } catch (RuntimeException | Error failure) {
+            report(failure);
         }
+        return fork;
     }
 
-    private void cancelTree(TreeRun<?> tree) {
-        tree.cancellationRequested.set(true);
-        for (TaskNode<?> node : tree.nodes) {
-            TaskState current = node.state();
-            if (current.isTerminal()) {
+    private void releaseFork(PluginShare share) {
+        share.release(1);
+        outstandingTasks.decrementAndGet();
+        if (waitingTrees > 0) {
+            admitWaiters();
+        }
+    }
+
+    private boolean helpOnce() {
+        if (!(Thread.currentThread() instanceof WorkerThread worker)) {
+            return false;
+        }
+        Runnable task = null;
+        if (stealingQueue != null) {
+            task = stealingQueue.poll(worker.index);
+            if (task == null) {
+                return false;
+            }
+        } else if (!computeSignal.tryAcquire()) {
+            return false;
+        }
+        try {
+            if (task != null) {
+                task.run();
+                return true;
+            }
+            return computeQueue.executeTask();
+        } catch (Throwable failure) {
+            report(failure);
+            return true;
+        }
+    }
+
+    private NodeLatency nodeLatency(String name) {
+        NodeLatency latency = nodeLatency.get(name);
+        if (latency != null) {
+            return latency;
+        }
+        String key = nodeLatency.size() < MAX_TRACKED_NODE_NAMES ? name : OTHER_NODES;
+        return nodeLatency.computeIfAbsent(key, ignored -> new NodeLatency());
+    }
+
+    private static long recordExecution(NodeLatency byPriority, NodeLatency byName, long startedNanos) {
+        long finishedNanos = System.nanoTime();
+        byPriority.execution.record(finishedNanos - startedNanos);
+        byName.execution.record(finishedNanos - startedNanos);
+        return finishedNanos;
+    }
+
+    private static void recordCommit(NodeLatency byPriority, NodeLatency byName, long finishedNanos) {
+        long committed = System.nanoTime() - finishedNanos;
+        byPriority.commit.record(committed);
+        byName.commit.record(committed);
+    }
+
+    private boolean missedDeadline(TreeRun run, int node) {
+        if (!run.isDeadlinePassed(node)) {
+            return false;
+        }
+        if (run.markDeadlineMissed()) {
+            deadlineMisses.increment();
+        }
+        run.requestCancellation();
+        return true;
+    }
+
+    /**
+     * Cancels a tree from a thread that may not advance it.
+     */
+    private void abandonTree(TreeRun run) {
+        if (workerCompletion) {
+            cancelTree(run);
+        } else {
+            postControl(() -> cancelTree(run));
+        }
+    }
+
+    private void completeSuccess(TreeRun run, int node, Object value) {
+        if (run.state(node) != TaskState.RUNNING) {
+            return;
+        }
+        if (run.isCancellationRequested() || run.generation() != generation.get()) {
+            completeCancellation(run, node);
+            return;
+        }
+
+        run.value(node, value);
+        if (!run.compareAndSetState(node, TaskState.RUNNING, TaskState.SUCCEEDED)) {
+            return;
+        }
+        publishSuccess(run, node, value);
+        finishNode(run, TaskState.SUCCEEDED);
+        TaskPlan plan = run.plan();
+        int parentWorker = run.executingWorker(node);
+        for (int edge = plan.firstChild(node), end = plan.endChild(node); edge < end; edge++) {
+            int child = plan.child(edge);
+            if (run.parentSucceeded(child)) {
+                dispatch(run, child, parentWorker);
+            }
+        }
+    }
+
+    private void completeFailure(TreeRun run, int node, Throwable failure) {
+        TaskState previous = run.terminate(node, TaskState.FAILED);
+        if (previous == null) {
+            return;
+        }
+        NodeTask queued = run.queuedTask(node);
+        if (previous == TaskState.QUEUED && queued != null) {
+            queued.cancel(run, node);
+        }
+        publishFailure(run, node, failure);
+        finishNode(run, TaskState.FAILED);
+        skipDescendants(run, node, failure);
+    }
+
+    private void completeCancellation(TreeRun run, int node) {
+        if (run.terminate(node, TaskState.CANCELLED) == null) {
+            return;
+        }
+        publishCancellation(run, node);
+        finishNode(run, TaskState.CANCELLED);
+    }
+
+    private void skipDescendants(TreeRun run, int failedNode, Throwable failure) {
+        TaskPlan plan = run.plan();
+        // Every edge is followed at most once, because only the first terminal transition of a node expands it.
+        int[] pending = new int[plan.edgeCount()];
+        int size = 0;
+        for (int edge = plan.firstChild(failedNode), end = plan.endChild(failedNode); edge < end; edge++) {
+            pending[size++] = plan.child(edge);
+        }
+        while (size > 0) {
+            int node = pending[--size];
+            if (run.terminate(node, TaskState.SKIPPED) == null) {
+                continue;
+            }
+            TaskNode<?> observer = run.observer(node);
+            if (observer != null) {
+                publishObserved(observer, TaskState.SKIPPED, failure);
+            }
+            if (node == plan.output()) {
+                IllegalStateException skipped = TaskNode.skipped(plan.name(node), failure);
+                publishCompletion(() -> run.output().completeExceptionally(skipped));
+            }
+            finishNode(run, TaskState.SKIPPED);
+            for (int edge = plan.firstChild(node), end = plan.endChild(node); edge < end; edge++) {
+                pending[size++] = plan.child(edge);
+            }
+        }
+    }
+
+    private void cancelTree(TreeRun run) {
+        run.requestCancellation();
+        for (int node = 0, size = run.plan().size(); node < size; node++) {
+            if (run.terminate(node, TaskState.CANCELLED) == null) {
                 continue;
             }
-            PrioritisedExecutor.PrioritisedTask queued = node.queuedTask();
+            NodeTask queued = run.queuedTask(node);
             if (queued != null) {
-                queued.cancel();
+                queued.cancel(run, node);
             }
-            node.stateReference().set(TaskState.CANCELLED);
-            publishCompletion(node::cancelResult);
-            finishNode(tree, TaskState.CANCELLED);
+            publishCancellation(run, node);
+            finishNode(run, TaskState.CANCELLED);
+        }
+    }
+
+    private void publishSuccess(TreeRun run, int node, Object value) {
+        TaskNode<?> observer = run.observer(node);
+        if (observer != null) {
+            publishObserved(observer, TaskState.SUCCEEDED, value);
+        }
+        if (node == run.plan().output()) {
+            publishCompletion(() -> run.output().complete(value));
         }
     }
 
-    private void finishNode(TreeRun<?> tree, TaskState terminalState) {
+    private void publishFailure(TreeRun run, int node, Throwable failure) {
+        TaskNode<?> observer = run.observer(node);
+        if (observer != null) {
+            publishObserved(observer, TaskState.FAILED, failure);
+        }
+        if (node == run.plan().output()) {
+            publishCompletion(() -> run.output().completeExceptionally(failure));
+        }
+    }
+
+    private void publishCancellation(TreeRun run, int node) {
+        TaskNode<?> observer = run.observer(node);
+        if (observer != null) {
+            publishObserved(observer, TaskState.CANCELLED, null);
+        }
+        if (node == run.plan().output()) {
+            publishCompletion(() -> run.output().cancel(false));
+        }
+    }
+
+    private void publishObserved(TaskNode<?> observer, TaskState outcome, Object value) {
+        Runnable completion = observer.settle(outcome, value);
+        if (completion != null) {
+            publishCompletion(completion);
+        }
+    }
+
+    private void finishNode(TreeRun run, TaskState terminalState) {
+        PluginShare share = run.share();
+        share.release(1);
+        share.taskFinished();
         outstandingTasks.decrementAndGet();
-        switch (terminalState) {
-            case SUCCEEDED -> tree.succeeded++;
-            case FAILED -> tree.failed++;
-            case SKIPPED -> tree.skipped++;
-            case CANCELLED -> tree.cancelled++;
-            default -> throw new IllegalArgumentException("Not a terminal state: " + terminalState);
+        if (waitingTrees > 0) {
+            admitWaiters();
         }
-        tree.remaining--;
-        if (tree.remaining == 0) {
-            finishTree(tree);
+        if (run.finishNode(terminalState)) {
+            finishTree(run);
         }
     }
 
-    private void finishTree(TreeRun<?> tree) {
-        tree.finished.set(true);
-        if (trees.remove(tree.id) != null) {
+    private void finishTree(TreeRun run) {
+        if (trees.remove(run.id()) != null) {
             activeTrees.decrementAndGet();
+            watchdog.treeFinished(run);
         }
         completedTrees.increment();
-        if (tree.failed > 0 || tree.skipped > 0) {
+        run.share().treeCompleted();
+        TaskTreeResult result = run.result();
+        if (result.failedTasks() > 0 || result.skippedTasks() > 0) {
             failedTrees.increment();
         }
-        if (tree.cancelled > 0) {
+        if (result.cancelledTasks() > 0) {
             cancelledTrees.increment();
         }
-        TaskTreeResult result = new TaskTreeResult(
-                tree.id,
-                tree.generation,
-                tree.nodes.size(),
-                tree.succeeded,
-                tree.failed,
-                tree.skipped,
-                tree.cancelled,
-                System.nanoTime() - tree.startedNanos
-        );
-        publishCompletion(() -> tree.completion.complete(result));
+        publishCompletion(() -> run.completion().complete(result));
+        TaskBatch batch = run.batch();
+        if (batch != null && batch.treeFinished(result)) {
+            publishCompletion(() -> batch.completion().complete(batch.result()));
+        }
+        if (workerCompletion && state.get() != SchedulerState.RUNNING) {
+            // A worker may retire the last tree after the stopping coordinator last looked at the tree table.
+            coordinatorSignal.release();
+        }
     }
 
     private void beginCoordinatorShutdown() {
         coordinatorStopping = true;
-        for (TreeRun<?> tree : new ArrayList<>(trees.values())) {
-            cancelTree(tree);
+        for (TreeRun run : new ArrayList<>(trees.values())) {
+            cancelTree(run);
         }
     }
 
+    private long coordinatorWaitNanos() {
+        long waitNanos = config.adaptiveWorkers() || config.throttlesLowPriority() || config.agesPriorities()
+                ? coordinatorWakeNanos
+                : -1L;
+        long timerNanos = timers.nanosUntilNext(System.nanoTime());
+        if (timerNanos >= 0L) {
+            waitNanos = waitNanos < 0L ? timerNanos : Math.min(waitNanos, timerNanos);
+        }
+        return waitNanos;
+    }
+
     private void coordinatorLoop() {
         try {
             while (true) {
                 try {
-                    coordinatorSignal.acquire();
+                    long waitNanos = coordinatorWaitNanos();
+                    if (waitNanos >= 0L) {
+                        coordinatorSignal.tryAcquire(waitNanos, TimeUnit.NANOSECONDS);
+                    } else {
+                        coordinatorSignal.acquire();
+                    }
                 } catch (InterruptedException interrupted) {
                     if (state.get() == SchedulerState.STOPPING) {
                         break;
@@ -390,6 +1476,16 @@ final class RedisTaskScheduler implements AutoCloseable {
                 if (!coordinatorQueue.isEmpty()) {
                     coordinatorSignal.release();
                 }
+                timers.advance(System.nanoTime());
+                if (config.adaptiveWorkers() && !coordinatorStopping) {
+                    resizeWorkers();
+                }
+                if (config.agesPriorities() && !coordinatorStopping) {
+                    agePriorities();
+                }
+                if (deferredCount.get() > 0 && tickClock.currentTickNanos() <= lowPriorityTickBudgetNanos) {
+                    releaseDeferred();
+                }
                 if (coordinatorStopping && trees.isEmpty() && coordinatorQueue.isEmpty()) {
                     break;
                 }
@@ -399,8 +1495,96 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
-    private void workerLoop() {
+    private void resizeWorkers() {
+        long now = System.nanoTime();
+        if (now - lastWorkerEvaluationNanos < WorkerPoolPolicy.EVALUATION_INTERVAL_NANOS) {
+            return;
+        }
+        lastWorkerEvaluationNanos = now;
+        int current = activeWorkers;
+        int busy = runningWorkers.get();
+        int next = WorkerPoolPolicy.nextTarget(
+                current,
+                config.minWorkerThreads(),
+                config.maxWorkerThreads(),
+                queuedComputeTasks(busy),
+                busy,
+                tickClock.averageTickNanos()
+        );
+        if (next == current) {
+            return;
+        }
+        activeWorkers = next;
+        for (int index = current; index < next; index++) {
+            LockSupport.unpark(workerThreads[index]);
+        }
+    }
+
+    private void agePriorities() {
+        long now = System.nanoTime();
+        if (now - lastAgingScanNanos < priorityAgingNanos / 4L) {
+            return;
+        }
+        lastAgingScanNanos = now;
+        int highest = SchedulerPriority.HIGH.ordinal();
+        for (TreeRun run : trees.values()) {
+            TaskPlan plan = run.plan();
+            for (int node = 0, size = plan.size(); node < size; node++) {
+                int base = plan.priority(node).ordinal();
+                long queuedNanos = run.queuedNanos(node);
+                // A zero timestamp belongs to a node whose dispatch has not finished writing it yet.
+                if (base <= highest || queuedNanos == 0L || plan.blocking(node)
+                        || run.state(node) != TaskState.QUEUED) {
+                    continue;
+                }
+                int due = (int) Math.min(base - highest, (now - queuedNanos) / priorityAgingNanos);
+                int applied = run.promotions(node);
+                if (due <= applied) {
+                    continue;
+                }
+                run.promotions(node, due);
+                agedTasks.add(due - applied);
+                SchedulerPriority aged = PRIORITIES[base - due];
+                try {
+                    if (stealingQueue != null) {
+                        // Deques cannot reorder, so the node is queued again one level up; whichever copy a
+                        // worker takes first runs it and the other finds it no longer queued.
+                        stealingQueue.push(nodeTask(run, node), WorkStealingTaskQueue.level(aged), -1);
+                    } else {
+                        NodeTask queued = run.queuedTask(node);
+                        PrioritisedExecutor.PrioritisedTask task = queued == null ? null : queued.queuedFor(run, node);
+                        if (task != null) {
+                            task.raisePriority(aged.delegate());
+                        }
+                    }
+                } catch (RuntimeException | Error failure) {
+                    report(failure);
+                }
+            }
+        }
+    }
+
+    private boolean awaitActivation(int worker) {
+        while (worker >= activeWorkers) {
+            if (workersStopping.get()) {
+                return false;
+            }
+            LockSupport.park(this);
+        }
+        return true;
+    }
+
+    private long queuedComputeTasks(int busy) {
+        return stealingQueue != null
+                ? stealingQueue.queuedTasks()
+                : Math.max(0L, computeQueue.getTotalTasksScheduled() - computeQueue.getTotalTasksExecuted() - busy);
+    }
+
+    private void workerLoop(int worker) {
         while (true) {
+            if (!awaitActivation(worker)) {
+                return;
+            }
             try {
                 computeSignal.acquire();
             } catch (InterruptedException interrupted) {
@@ -424,6 +1608,28 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
+    private void stealingWorkerLoop(int worker) {
+        Runnable task;
+        while (awaitActivation(worker) && (task = stealingQueue.take(worker)) != null) {
+            try {
+                task.run();
+            } catch (Throwable failure) {
+                report(failure);
+            }
+        }
+    }
+
+    private RejectedExecutionException reserve(int nodeCount, PluginShare share) {
+        if (!share.tryReserve(nodeCount)) {
+            return new RejectedExecutionException("Task quota of " + share.name() + " is exhausted");
+        }
+        if (!reserve(nodeCount)) {
+            share.release(nodeCount);
+            return new RejectedExecutionException("Scheduler task capacity is exhausted");
+        }
+        return null;
+    }
+
     private boolean reserve(int nodeCount) {
         while (true) {
             int current = outstandingTasks.get();
@@ -436,13 +1642,6 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
-    private void reject(List<TaskNode<?>> nodes, RejectedExecutionException rejection) {
-        for (TaskNode<?> node : nodes) {
-            node.stateReference().set(TaskState.FAILED);
-            node.failResult(rejection);
-        }
-    }
-
     private void postControl(Runnable command) {
         coordinatorQueue.offer(command);
         coordinatorSignal.release();
@@ -450,6 +1649,10 @@ final class RedisTaskScheduler implements AutoCloseable {
 
     private void publishCompletion(Runnable completion) {
         try {
+            if (stealingQueue != null) {
+                stealingQueue.push(completion, WorkStealingTaskQueue.COMPLETION_LEVEL, -1);
+                return;
+            }
             computeQueue.queueTask(completion, Priority.HIGHER);
         } catch (RuntimeException | Error failure) {
             completion.run();
@@ -457,6 +1660,14 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
+    private void queueLaunch(Runnable launch) {
+        if (stealingQueue != null) {
+            stealingQueue.push(launch, WorkStealingTaskQueue.level(SchedulerPriority.NORMAL), -1);
+        } else {
+            computeQueue.queueTask(launch, SchedulerPriority.NORMAL.delegate());
+        }
+    }
+
     private void awaitCoordinator(long deadline) {
         long remaining = deadline - System.nanoTime();
         if (remaining <= 0L) {
@@ -494,8 +1705,19 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
-    private Thread daemonThread(String name, Runnable run) {
-        Thread thread = new Thread(run, name);
+    private void stopBlockingLane(long deadline) {
+        blockingLane.shutdown();
+        try {
+            if (!blockingLane.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                blockingLane.shutdownNow();
+            }
+        } catch (InterruptedException interrupted) {
+            blockingLane.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <W extends Thread> W daemonThread(W thread) {
         thread.setDaemon(true);
         thread.setUncaughtExceptionHandler((ignored, failure) -> report(failure));
         return thread;
@@ -509,43 +1731,186 @@ final class RedisTaskScheduler implements AutoCloseable {
         }
     }
 
-    private final class TreeRun<T> {
-        private final long id;
-        private final long generation;
-        private final TaskNode<T> root;
-        private final List<TaskNode<?>> nodes;
-        private final long startedNanos = System.nanoTime();
-        private final AtomicBoolean cancellationRequested = new AtomicBoolean();
-        private final AtomicBoolean finished = new AtomicBoolean();
-        private final CompletableFuture<TaskTreeResult> completion = new CompletableFuture<>();
-        private int remaining;
-        private int succeeded;
-        private int failed;
-        private int skipped;
-        private int cancelled;
-
-        private TreeRun(long id, long generation, TaskNode<T> root, List<TaskNode<?>> nodes) {
-            this.id = id;
-            this.generation = generation;
-            this.root = root;
-            this.nodes = nodes;
-            remaining = nodes.size();
-        }
-
-        private TaskTreeHandle<T> handle() {
-            return new TaskTreeHandle<>(
-                    id,
-                    generation,
-                    root,
-                    completion.minimalCompletionStage(),
-                    () -> {
-                        if (finished.get() || !cancellationRequested.compareAndSet(false, true)) {
-                            return false;
-                        }
-                        postControl(() -> cancelTree(this));
-                        return true;
-                    }
-            );
+    private final class NodeScope implements BooleanSupplier, TaskExecutionContext.Scope {
+        private final TaskExecutionContext context = new TaskExecutionContext(this, this);
+        private TreeRun run;
+        private int node;
+        private NodeLatency statistics;
+
+        private TaskExecutionContext bind(TreeRun nextRun, int nextNode, NodeLatency nextStatistics) {
+            run = nextRun;
+            node = nextNode;
+            statistics = nextStatistics;
+            context.bind(nextRun.id(), nextRun.taskId(nextNode), nextRun.generation());
+            return context;
+        }
+
+        private void unbind() {
+            run = null;
+            statistics = null;
+        }
+
+        @Override
+        public boolean getAsBoolean() {
+            return run.isCancellationRequested()
+                    || !isGenerationCurrent(run.generation())
+                    || run.isDeadlinePassed(node);
+        }
+
+        @Override
+        public <R> TaskFork<R> fork(TaskExecutionContext context, TaskFork.Action<? extends R> action) {
+            return RedisTaskScheduler.this.fork(run, node, context, action);
+        }
+
+        @Override
+        public int parallelism() {
+            return activeWorkers;
+        }
+
+        @Override
+        public long elementNanos() {
+            return statistics.elementNanos();
+        }
+
+        @Override
+        public void recordElementNanos(long nanos) {
+            statistics.recordElementNanos(nanos);
+        }
+    }
+
+    private abstract static class PooledMessage implements Runnable {
+        private volatile boolean inUse;
+
+        final boolean acquire() {
+            if (inUse) {
+                return false;
+            }
+            inUse = true;
+            return true;
+        }
+
+        final void release() {
+            inUse = false;
         }
     }
+
+    /**
+     * Reusable messages claimed by one producing thread and released by any consumer, so neither side needs an
+     * atomic read-modify-write. A producer whose next message is still in flight allocates a fresh one.
+     */
+    private static final class MessageRing<M extends PooledMessage> {
+        private final M[] messages;
+        private int next;
+
+        private MessageRing(M[] messages, Supplier<M> factory) {
+            for (int index = 0; index < messages.length; index++) {
+                messages[index] = factory.get();
+            }
+            this.messages = messages;
+        }
+
+        private M claim() {
+            M message = messages[next];
+            if (!message.acquire()) {
+                return null;
+            }
+            next = (next + 1) % messages.length;
+            return message;
+        }
+    }
+
+    final class NodeTask extends PooledMessage {
+        private TreeRun run;
+        private int node;
+        private volatile PrioritisedExecutor.PrioritisedTask queued;
+
+        @Override
+        public void run() {
+            TreeRun target = run;
+            int targetNode = node;
+            run = null;
+            queued = null;
+            release();
+            execute(target, targetNode);
+        }
+
+        /**
+         * The queued task while this message still carries {@code node} of {@code targetRun}. The task is read
+         * before the node, so a message already recycled for another node never yields that node's task.
+         */
+        PrioritisedExecutor.PrioritisedTask queuedFor(TreeRun targetRun, int targetNode) {
+            PrioritisedExecutor.PrioritisedTask task = queued;
+            return task != null && run == targetRun && node == targetNode ? task : null;
+        }
+
+        void cancel(TreeRun targetRun, int targetNode) {
+            PrioritisedExecutor.PrioritisedTask task = queuedFor(targetRun, targetNode);
+            if (task != null && task.cancel()) {
+                run = null;
+                queued = null;
+                release();
+            }
+        }
+    }
+
+    private final class NodeOutcome extends PooledMessage {
+        private TaskState outcome;
+        private TreeRun run;
+        private int node;
+        private Object result;
+        private NodeLatency byPriority;
+        private NodeLatency byName;
+        private long finishedNanos;
+
+        @Override
+        public void run() {
+            TaskState targetOutcome = outcome;
+            TreeRun target = run;
+            int targetNode = node;
+            Object targetResult = result;
+            NodeLatency targetByPriority = byPriority;
+            NodeLatency targetByName = byName;
+            long targetFinishedNanos = finishedNanos;
+            run = null;
+            result = null;
+            byPriority = null;
+            byName = null;
+            release();
+            recordCommit(targetByPriority, targetByName, targetFinishedNanos);
+            applyOutcome(targetOutcome, target, targetNode, targetResult);
+        }
+    }
+
+    private static final class WorkerThread extends Thread {
+        private final int index;
+        private final MessageRing<NodeTask> dispatches;
+        private final MessageRing<NodeOutcome> outcomes;
+        private NodeScope[] scopes = new NodeScope[4];
+        private int scopeDepth;
+
+        private WorkerThread(
+                Runnable run,
+                String name,
+                int index,
+                MessageRing<NodeTask> dispatches,
+                MessageRing<NodeOutcome> outcomes
+        ) {
+            super(run, name);
+            this.index = index;
+            this.dispatches = dispatches;
+            this.outcomes = outcomes;
+        }
+    }
+
+    private record ReservationWaiter(
+            TaskPlan plan,
+            Object input,
+            TaskNode<?>[] observers,
+            PluginShare share,
+            SchedulerPriority priority,
+            long sequence,
+            long submittedNanos,
+            CompletableFuture<TreeRun> admitted
+    ) {
+    }
 }
@@ -1,17 +1,34 @@
 package com.akiasync.scheduler;
 
+import java.util.Objects;
+
 public record SchedulerConfig(
         int workerThreads,
         int maxOutstandingTasks,
         int maxTreeNodes,
         int coordinatorBatchSize,
         int maxOwnerTasks,
-        long shutdownWaitMillis
+        long shutdownWaitMillis,
+        ComputeMode computeMode,
+        CompletionMode completionMode,
+        int minWorkerThreads,
+        int maxWorkerThreads,
+        int maxPluginTasks,
+        long lowPriorityTickBudgetMillis,
+        int resultCacheSize,
+        boolean coalesceRegionCommits,
+        long commitTickBudgetNanos,
+        long priorityAgingMillis,
+        int maxBlockingTasks,
+        long nodeTimeoutMillis
 ) {
     public SchedulerConfig {
         if (workerThreads < 1) {
             throw new IllegalArgumentException("workerThreads must be positive");
         }
+        if (minWorkerThreads < 1 || minWorkerThreads > workerThreads || maxWorkerThreads < workerThreads) {
+            throw new IllegalArgumentException("workerThreads must be between minWorkerThreads and maxWorkerThreads");
+        }
         if (maxOutstandingTasks < 1) {
             throw new IllegalArgumentException("maxOutstandingTasks must be positive");
         }
@@ -27,11 +44,386 @@ public record SchedulerConfig(
         if (shutdownWaitMillis < 1) {
             throw new IllegalArgumentException("shutdownWaitMillis must be positive");
         }
+        if (maxPluginTasks < 1 || maxPluginTasks > maxOutstandingTasks) {
+            throw new IllegalArgumentException("maxPluginTasks must be between 1 and maxOutstandingTasks");
+        }
+        if (lowPriorityTickBudgetMillis < 0) {
+            throw new IllegalArgumentException("lowPriorityTickBudgetMillis must not be negative");
+        }
+        if (resultCacheSize < 0) {
+            throw new IllegalArgumentException("resultCacheSize must not be negative");
+        }
+        if (commitTickBudgetNanos < 0L) {
+            throw new IllegalArgumentException("commitTickBudgetNanos must not be negative");
+        }
+        if (priorityAgingMillis < 0L) {
+            throw new IllegalArgumentException("priorityAgingMillis must not be negative");
+        }
+        if (maxBlockingTasks < 1) {
+            throw new IllegalArgumentException("maxBlockingTasks must be positive");
+        }
+        if (nodeTimeoutMillis < 0L) {
+            throw new IllegalArgumentException("nodeTimeoutMillis must not be negative");
+        }
+        Objects.requireNonNull(computeMode, "computeMode");
+        Objects.requireNonNull(completionMode, "completionMode");
+    }
+
+    public SchedulerConfig(
+            int workerThreads,
+            int maxOutstandingTasks,
+            int maxTreeNodes,
+            int coordinatorBatchSize,
+            int maxOwnerTasks,
+            long shutdownWaitMillis
+    ) {
+        this(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                ComputeMode.SHARED_QUEUE,
+                CompletionMode.COORDINATOR,
+                workerThreads,
+                workerThreads,
+                maxOutstandingTasks,
+                0L,
+                0,
+                false,
+                0L,
+                0L,
+                64,
+                0L
+        );
     }
 
     public static SchedulerConfig defaults() {
         int processors = Runtime.getRuntime().availableProcessors();
         int workers = Math.max(1, Math.min(4, processors / 2));
-        return new SchedulerConfig(workers, 8_192, 1_024, 64, 4_096, 2_000);
+        // Behaves like the fixed scheduler; adaptive workers, throttling, aging, caching and commit budgets are
+        // opt-in. The plugin quota only applies to forPlugin submissions.
+        return new SchedulerConfig(workers, 8_192, 1_024, 64, 4_096, 2_000)
+                .withMaxPluginTasks(4_096);
+    }
+
+    /**
+     * Whether the worker set may grow and shrink between {@link #minWorkerThreads()} and
+     * {@link #maxWorkerThreads()} at runtime; {@link #workerThreads()} is then the initial size.
+     */
+    public boolean adaptiveWorkers() {
+        return minWorkerThreads < maxWorkerThreads;
+    }
+
+    public boolean throttlesLowPriority() {
+        return lowPriorityTickBudgetMillis > 0;
+    }
+
+    public boolean agesPriorities() {
+        return priorityAgingMillis > 0;
+    }
+
+    public SchedulerConfig withComputeMode(ComputeMode nextComputeMode) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                nextComputeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    public SchedulerConfig withCompletionMode(CompletionMode nextCompletionMode) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                nextCompletionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Lets the scheduler resize its worker set between the given bounds from compute backlog and server tick
+     * time. The current {@link #workerThreads()} is clamped into the range and used as the initial size.
+     */
+    public SchedulerConfig withAdaptiveWorkers(int nextMinWorkerThreads, int nextMaxWorkerThreads) {
+        if (nextMinWorkerThreads < 1 || nextMaxWorkerThreads < nextMinWorkerThreads) {
+            throw new IllegalArgumentException("Adaptive worker bounds must satisfy 1 <= min <= max");
+        }
+        return new SchedulerConfig(
+                Math.max(nextMinWorkerThreads, Math.min(nextMaxWorkerThreads, workerThreads)),
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                nextMinWorkerThreads,
+                nextMaxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Caps the tasks any single plugin may have outstanding, so one plugin cannot take the whole
+     * {@link #maxOutstandingTasks()} budget. Plugins may be given their own quota through
+     * {@link AkiScheduler#forPlugin(org.bukkit.plugin.Plugin, int, int)}; submissions made without
+     * {@code forPlugin} are limited by {@link #maxOutstandingTasks()} alone.
+     */
+    public SchedulerConfig withMaxPluginTasks(int nextMaxPluginTasks) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                nextMaxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Holds back {@link SchedulerPriority#LOW} and {@link SchedulerPriority#BACKGROUND} nodes while the server
+     * tick in progress has run longer than {@code budgetMillis}, releasing them once the tick ends. Zero
+     * disables the throttle.
+     */
+    public SchedulerConfig withLowPriorityTickBudget(long budgetMillis) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                budgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Keeps up to {@code size} finished results of keyed nodes (see {@link TaskNode#cacheKey(Object, long)}) for
+     * later trees. Identical keyed nodes that run at the same time always share one execution; zero keeps no
+     * results beyond that.
+     */
+    public SchedulerConfig withResultCacheSize(int size) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                size,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Batches region commits: commits for the same world and 16x16-chunk region section that arrive before the
+     * section's pending batch runs are applied by one scheduled task on the owner thread instead of one task
+     * each. Every commit keeps its own future and generation check.
+     */
+    public SchedulerConfig withCoalescedRegionCommits(boolean coalesce) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesce,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Caps the time the global owner thread spends per tick on commits submitted through
+     * {@link AkiScheduler#commitBudgeted(SchedulerPriority, java.util.function.Supplier)}; commits left over run
+     * on later ticks, highest priority first. At least one commit runs per tick. Zero runs every queued commit in
+     * the tick it was queued for.
+     */
+    public SchedulerConfig withCommitTickBudgetNanos(long budgetNanos) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                budgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Raises a queued {@link SchedulerPriority#NORMAL}, {@link SchedulerPriority#LOW} or
+     * {@link SchedulerPriority#BACKGROUND} node by one level for every {@code thresholdMillis} it has waited, up
+     * to {@link SchedulerPriority#HIGH}, so long peaks of urgent work cannot starve trees that hold task
+     * capacity. Zero disables aging.
+     */
+    public SchedulerConfig withPriorityAging(long thresholdMillis) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                thresholdMillis,
+                maxBlockingTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Caps how many {@link TaskNode#blocking() blocking} nodes run at once on the virtual-thread I/O lane.
+     * Further blocking nodes wait for a slot without holding a compute worker.
+     */
+    public SchedulerConfig withMaxBlockingTasks(int maxTasks) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxTasks,
+                nodeTimeoutMillis
+        );
+    }
+
+    /**
+     * Limits how long any node may run once started, unless it sets its own
+     * {@link TaskNode#timeout(long, java.util.concurrent.TimeUnit) timeout}. A watchdog thread cancels the tree
+     * of a node that runs longer and reports the node with the stack of its thread. Zero, the default, leaves
+     * nodes without their own timeout unlimited.
+     */
+    public SchedulerConfig withNodeTimeout(long timeoutMillis) {
+        return new SchedulerConfig(
+                workerThreads,
+                maxOutstandingTasks,
+                maxTreeNodes,
+                coordinatorBatchSize,
+                maxOwnerTasks,
+                shutdownWaitMillis,
+                computeMode,
+                completionMode,
+                minWorkerThreads,
+                maxWorkerThreads,
+                maxPluginTasks,
+                lowPriorityTickBudgetMillis,
+                resultCacheSize,
+                coalesceRegionCommits,
+                commitTickBudgetNanos,
+                priorityAgingMillis,
+                maxBlockingTasks,
+                timeoutMillis
+        );
     }
 }
@@ -0,0 +1,18 @@
+package com.akiasync.scheduler;
+
+import java.util.List;
+
+/**
+ * A node the watchdog caught running past its timeout. {@code stack} is the stack of {@code thread} at that
+ * moment; the node's tree was cancelled, but the thread stays busy until the node returns.
+ */
+public record StuckTaskSnapshot(
+        long treeId,
+        long taskId,
+        String node,
+        String thread,
+        long runningNanos,
+        long timeoutNanos,
+        List<StackTraceElement> stack
+) {
+}
@@ -0,0 +1,55 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregates the results of trees admitted together by one {@code submitAll} call.
+ */
+final class TaskBatch {
+    private final long firstTreeId;
+    private final long generation;
+    private final long startedNanos = System.nanoTime();
+    private final CompletableFuture<TaskTreeResult> completion = new CompletableFuture<>();
+    private final AtomicInteger remainingTrees;
+    private final AtomicInteger totalTasks = new AtomicInteger();
+    private final AtomicInteger succeededTasks = new AtomicInteger();
+    private final AtomicInteger failedTasks = new AtomicInteger();
+    private final AtomicInteger skippedTasks = new AtomicInteger();
+    private final AtomicInteger cancelledTasks = new AtomicInteger();
+
+    TaskBatch(long firstTreeId, long generation, int trees) {
+        this.firstTreeId = firstTreeId;
+        this.generation = generation;
+        remainingTrees = new AtomicInteger(trees);
+    }
+
+    CompletableFuture<TaskTreeResult> completion() {
+        return completion;
+    }
+
+    /**
+     * Adds one finished tree and returns {@code true} when it was the last tree of the batch.
+     */
+    boolean treeFinished(TaskTreeResult result) {
+        totalTasks.addAndGet(result.totalTasks());
+        succeededTasks.addAndGet(result.succeededTasks());
+        failedTasks.addAndGet(result.failedTasks());
+        skippedTasks.addAndGet(result.skippedTasks());
+        cancelledTasks.addAndGet(result.cancelledTasks());
+        return remainingTrees.decrementAndGet() == 0;
+    }
+
+    TaskTreeResult result() {
+        return new TaskTreeResult(
+                firstTreeId,
+                generation,
+                totalTasks.get(),
+                succeededTasks.get(),
+                failedTasks.get(),
+                skippedTasks.get(),
+                cancelledTasks.get(),
+                System.nanoTime() - startedNanos
+        );
+    }
+}
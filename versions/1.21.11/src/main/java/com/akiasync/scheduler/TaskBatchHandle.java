@@ -0,0 +1,48 @@
+package com.akiasync.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Trees admitted together by one {@code submitAll} call.
+ *
+ * @param <H> per-tree handle type, {@link TaskTreeHandle} or {@link TemplateRunHandle}
+ */
+public final class TaskBatchHandle<H> {
+    private final List<H> handles;
+    private final CompletionStage<TaskTreeResult> completion;
+    private final BooleanSupplier cancellation;
+
+    TaskBatchHandle(List<H> handles, CompletionStage<TaskTreeResult> completion, BooleanSupplier cancellation) {
+        this.handles = handles;
+        this.completion = completion;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Per-tree handles in submission order. Tree ids within a batch are consecutive.
+     */
+    public List<H> handles() {
+        return handles;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    /**
+     * Completes once every tree of the batch is terminal. The result sums the task counts of all trees; its
+     * tree id is the id of the first tree and its duration spans the whole batch.
+     */
+    public CompletionStage<TaskTreeResult> completion() {
+        return completion;
+    }
+
+    /**
+     * Cancels every tree of the batch that has not finished yet, returning whether any tree was cancelled.
+     */
+    public boolean cancel() {
+        return cancellation.getAsBoolean();
+    }
+}
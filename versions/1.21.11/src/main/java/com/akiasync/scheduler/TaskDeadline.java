@@ -0,0 +1,46 @@
+package com.akiasync.scheduler;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a node or a whole tree must have finished, measured from submission. A deadline in
+ * ticks is aligned to server tick boundaries, so {@code ticks(2)} means "before the tick after next starts".
+ */
+public final class TaskDeadline {
+    private final long nanos;
+    private final int ticks;
+
+    private TaskDeadline(long nanos, int ticks) {
+        this.nanos = nanos;
+        this.ticks = ticks;
+    }
+
+    public static TaskDeadline after(long timeout, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (timeout < 1L) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        return new TaskDeadline(unit.toNanos(timeout), 0);
+    }
+
+    public static TaskDeadline ticks(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("ticks must be positive");
+        }
+        return new TaskDeadline(0L, ticks);
+    }
+
+    /**
+     * Returns the absolute {@link System#nanoTime()} value of this deadline for a tree submitted at
+     * {@code submittedNanos}.
+     */
+    long resolve(long submittedNanos, TickClock tickClock) {
+        return ticks == 0 ? submittedNanos + nanos : tickClock.tickBoundaryNanos(ticks, submittedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return ticks == 0 ? nanos + "ns" : ticks + " ticks";
+    }
+}
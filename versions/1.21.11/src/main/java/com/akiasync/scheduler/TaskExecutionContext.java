@@ -1,19 +1,29 @@
 package com.akiasync.scheduler;
 
+import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.function.BooleanSupplier;
 
+/**
+ * What a running node sees of its tree. A context is only valid while its node runs: workers reuse it for the
+ * next node they execute, so it must not be kept or handed to anything that outlives the node.
+ */
 public final class TaskExecutionContext {
-    private final long treeId;
-    private final long taskId;
-    private final long generation;
     private final BooleanSupplier cancellationRequested;
+    private final Scope scope;
+    private long treeId;
+    private long taskId;
+    private long generation;
 
-    TaskExecutionContext(long treeId, long taskId, long generation, BooleanSupplier cancellationRequested) {
-        this.treeId = treeId;
-        this.taskId = taskId;
-        this.generation = generation;
+    TaskExecutionContext(BooleanSupplier cancellationRequested, Scope scope) {
         this.cancellationRequested = cancellationRequested;
+        this.scope = scope;
+    }
+
+    void bind(long nextTreeId, long nextTaskId, long nextGeneration) {
+        treeId = nextTreeId;
+        taskId = nextTaskId;
+        generation = nextGeneration;
     }
 
     public long treeId() {
@@ -37,4 +47,47 @@ public final class TaskExecutionContext {
             throw new CancellationException("Task tree was cancelled or invalidated");
         }
     }
+
+    /**
+     * Splits off a subtask that other workers may run while this node continues, for parallelism whose shape
+     * is only known at run time. Each fork counts against the scheduler's task capacity and the plugin's quota
+     * until it finishes; when neither has room the fork simply runs in {@link TaskFork#join()}. Forks share
+     * this node's priority and cancellation, and may fork again. Every fork must be joined before the node
+     * returns.
+     */
+    public <R> TaskFork<R> fork(TaskFork.Action<? extends R> action) {
+        Objects.requireNonNull(action, "action");
+        return scope.fork(this, action);
+    }
+
+    /**
+     * Workers currently able to run forks, used to size fan-out chunks.
+     */
+    int parallelism() {
+        return scope.parallelism();
+    }
+
+    /**
+     * Smoothed per-element cost of earlier fan-outs by nodes of this name, or {@code -1} when unknown.
+     */
+    long elementNanos() {
+        return scope.elementNanos();
+    }
+
+    void recordElementNanos(long nanos) {
+        scope.recordElementNanos(nanos);
+    }
+
+    /**
+     * What a running node may ask of its scheduler.
+     */
+    interface Scope {
+        <R> TaskFork<R> fork(TaskExecutionContext context, TaskFork.Action<? extends R> action);
+
+        int parallelism();
+
+        long elementNanos();
+
+        void recordElementNanos(long nanos);
+    }
 }
@@ -1,35 +1,56 @@
 package com.akiasync.scheduler;
 
-import ca.spottedleaf.concurrentutil.executor.PrioritisedExecutor;
-
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
 
 public final class TaskNode<T> {
+    /**
+     * Chunk size that lets {@link #fanOut} and {@link #reduce} size chunks from the active worker count and the
+     * per-element cost measured by earlier fan-outs of the same node name.
+     */
+    public static final int ADAPTIVE_CHUNKS = 0;
+
     private final TaskTree.Seal seal;
     private final String name;
     private final SchedulerPriority priority;
+    private final int parentCount;
     private final Computation<T> computation;
     private final List<TaskNode<?>> children = new ArrayList<>();
-    private final AtomicReference<TaskState> state = new AtomicReference<>(TaskState.CREATED);
-    private final CompletableFuture<T> result = new CompletableFuture<>();
-    private volatile long taskId;
-    private volatile T value;
-    private volatile PrioritisedExecutor.PrioritisedTask queuedTask;
+    private TaskDeadline deadline;
+    private TaskPlan.CacheKey cacheKey;
+    private boolean blocking;
+    private long timeoutNanos;
+    private RetryPolicy retryPolicy;
+    private int ordinal = -1;
+    private volatile TreeRun run;
+    private volatile TaskState detachedState = TaskState.CREATED;
+    /*
+     * The result future exists only once result() has been called; until then the scheduler just records the
+     * outcome here. Both sides are guarded by this node's monitor.
+     */
+    private CompletableFuture<T> result;
+    private TaskState outcome;
+    private Object outcomeValue;
 
     TaskNode(
             TaskTree.Seal seal,
             String name,
             SchedulerPriority priority,
+            int parentCount,
             Computation<T> computation
     ) {
         this.seal = seal;
         this.name = requireName(name);
         this.priority = Objects.requireNonNull(priority, "priority");
+        this.parentCount = parentCount;
         this.computation = Objects.requireNonNull(computation, "computation");
     }
 
@@ -45,13 +66,147 @@ public final class TaskNode<T> {
                     seal,
                     childName,
                     childPriority,
-                    context -> continuation.run(value, context)
+                    1,
+                    (run, context) -> continuation.run(valueIn(run), context)
             );
             children.add(child);
             return child;
         }
     }
 
+    /**
+     * Adds a child that maps every element of the collection {@code elements} extracts from this node's result,
+     * in parallel chunks of {@code chunkSize} elements or {@link #ADAPTIVE_CHUNKS}. The child's result lists
+     * the mapped values in source order, backed by one array allocated up front. Chunks run as forks of the
+     * child; see {@link TaskExecutionContext#fork}.
+     */
+    public <E, R> TaskNode<List<R>> fanOut(
+            String childName,
+            SchedulerPriority childPriority,
+            Function<? super T, ? extends Collection<? extends E>> elements,
+            int chunkSize,
+            Continuation<? super E, ? extends R> mapper
+    ) {
+        Objects.requireNonNull(elements, "elements");
+        Objects.requireNonNull(mapper, "mapper");
+        FanOut.requireChunkSize(chunkSize);
+        return then(
+                childName,
+                childPriority,
+                (value, context) -> FanOut.map(elements.apply(value), chunkSize, mapper, context)
+        );
+    }
+
+    /**
+     * Adds a child that folds the collection {@code elements} extracts from this node's result in parallel
+     * chunks, like {@link java.util.stream.Stream#reduce(Object, BiFunction, BinaryOperator)}: every chunk
+     * starts from {@code identity}, which must not be mutated, and chunk results are combined in source order.
+     */
+    public <E, A> TaskNode<A> reduce(
+            String childName,
+            SchedulerPriority childPriority,
+            Function<? super T, ? extends Collection<? extends E>> elements,
+            int chunkSize,
+            A identity,
+            BiFunction<A, ? super E, A> accumulator,
+            BinaryOperator<A> combiner
+    ) {
+        Objects.requireNonNull(elements, "elements");
+        Objects.requireNonNull(accumulator, "accumulator");
+        Objects.requireNonNull(combiner, "combiner");
+        FanOut.requireChunkSize(chunkSize);
+        return then(
+                childName,
+                childPriority,
+                (value, context) -> FanOut.reduce(
+                        elements.apply(value),
+                        chunkSize,
+                        identity,
+                        accumulator,
+                        combiner,
+                        context
+                )
+        );
+    }
+
+    /**
+     * Requires this node to finish by {@code deadline}, counted from submission of its tree. Within a priority
+     * the scheduler runs nodes with earlier deadlines first. A node that cannot finish in time cancels its whole
+     * tree: one whose deadline passed before it started never runs, and a running one sees
+     * {@link TaskExecutionContext#isCancellationRequested()} turn true.
+     */
+    public TaskNode<T> deadline(TaskDeadline nextDeadline) {
+        Objects.requireNonNull(nextDeadline, "deadline");
+        synchronized (seal) {
+            seal.requireOpen();
+            deadline = nextDeadline;
+            return this;
+        }
+    }
+
+    /**
+     * Shares this node's result with every other node of the same name, {@code key} and {@code generation},
+     * across trees and plugins. While one of them runs, the others wait for its result instead of running
+     * themselves, and the scheduler keeps recent results for later trees until a newer {@code generation} of
+     * the key replaces them. The key must identify the node's input completely and its value must be safe to
+     * share; nodes sharing a name and key must produce the same result type.
+     */
+    public TaskNode<T> cacheKey(Object key, long generation) {
+        Objects.requireNonNull(key, "key");
+        synchronized (seal) {
+            seal.requireOpen();
+            cacheKey = new TaskPlan.CacheKey(run -> key, run -> generation);
+            return this;
+        }
+    }
+
+    /**
+     * Marks this node as blocking, for example because it reads files or queries a database. It then runs on
+     * the scheduler's virtual-thread I/O lane, limited by {@link SchedulerConfig#maxBlockingTasks()}, instead
+     * of holding a compute worker while it waits. Blocking nodes start in the order they become ready;
+     * dependencies, deadlines and cancellation work as for any other node, and a running one should still check
+     * {@link TaskExecutionContext#isCancellationRequested()} between calls.
+     */
+    public TaskNode<T> blocking() {
+        synchronized (seal) {
+            seal.requireOpen();
+            blocking = true;
+            return this;
+        }
+    }
+
+    /**
+     * Limits how long this node may run once it has started; a {@link #deadline} instead counts from the
+     * tree's submission. When the node runs longer, the scheduler's watchdog cancels its tree, logs the stack of
+     * the thread running it and lists it under {@code /akiasync scheduler status}. Replaces
+     * {@link SchedulerConfig#nodeTimeoutMillis()} for this node.
+     */
+    public TaskNode<T> timeout(long timeout, TimeUnit unit) {
+        Objects.requireNonNull(unit, "unit");
+        if (timeout < 1L) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        synchronized (seal) {
+            seal.requireOpen();
+            timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+    }
+
+    /**
+     * Runs this node again when it fails, as {@code policy} allows, before its failure skips its descendants.
+     * A retried node keeps its tree's task reservation and waits out the policy's backoff without holding a
+     * worker; its result settles only after the last attempt. Cancellation and deadlines stop further attempts.
+     */
+    public TaskNode<T> retry(RetryPolicy policy) {
+        Objects.requireNonNull(policy, "policy");
+        synchronized (seal) {
+            seal.requireOpen();
+            retryPolicy = policy;
+            return this;
+        }
+    }
+
     public String name() {
         return name;
     }
@@ -61,60 +216,138 @@ public final class TaskNode<T> {
     }
 
     public TaskState state() {
-        return state.get();
+        TreeRun bound = run;
+        return bound == null ? detachedState : bound.state(ordinal);
     }
 
     public long taskId() {
-        return taskId;
+        TreeRun bound = run;
+        return bound == null ? 0L : bound.taskId(ordinal);
     }
 
+    /**
+     * Completes with this node's value, or exceptionally when it fails, is skipped or is cancelled. The future
+     * is created on the first call, so nodes nobody asks about cost the scheduler no completion work.
+     */
     public CompletionStage<T> result() {
-        return result.minimalCompletionStage();
+        CompletableFuture<T> future;
+        boolean settled;
+        synchronized (this) {
+            future = result;
+            settled = false;
+            if (future == null) {
+                future = new CompletableFuture<>();
+                result = future;
+                settled = outcome != null;
+            }
+        }
+        if (settled) {
+            complete(future);
+        }
+        return future.minimalCompletionStage();
     }
 
     List<TaskNode<?>> children() {
         return children;
     }
 
-    T compute(TaskExecutionContext context) throws Exception {
-        return computation.run(context);
+    TaskTree.Seal seal() {
+        return seal;
     }
 
-    AtomicReference<TaskState> stateReference() {
-        return state;
+    void addChild(TaskNode<?> child) {
+        children.add(child);
     }
 
-    void taskId(long nextTaskId) {
-        taskId = nextTaskId;
+    int parentCount() {
+        return parentCount;
     }
 
-    @SuppressWarnings("unchecked")
-    void value(Object nextValue) {
-        value = (T) nextValue;
+    Computation<T> computation() {
+        return computation;
+    }
+
+    TaskDeadline deadline() {
+        return deadline;
+    }
+
+    TaskPlan.CacheKey cacheKey() {
+        return cacheKey;
+    }
+
+    boolean isBlocking() {
+        return blocking;
+    }
+
+    long timeoutNanos() {
+        return timeoutNanos;
+    }
+
+    RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Position of this node in its compiled plan, or {@code -1} before the tree is prepared.
+     */
+    int ordinal() {
+        return ordinal;
     }
 
-    PrioritisedExecutor.PrioritisedTask queuedTask() {
-        return queuedTask;
+    void ordinal(int nextOrdinal) {
+        ordinal = nextOrdinal;
     }
 
-    void queuedTask(PrioritisedExecutor.PrioritisedTask task) {
-        queuedTask = task;
+    void bind(TreeRun nextRun) {
+        run = nextRun;
     }
 
     @SuppressWarnings("unchecked")
-    void completeResult(Object nextValue) {
-        result.complete((T) nextValue);
+    T valueIn(TreeRun source) {
+        return (T) source.value(ordinal);
     }
 
-    void failResult(Throwable failure) {
-        result.completeExceptionally(failure);
+    void reject(Throwable rejection) {
+        detachedState = TaskState.FAILED;
+        Runnable completion = settle(TaskState.FAILED, rejection);
+        if (completion != null) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Records this node's terminal outcome: its value, its failure, the ancestor failure that skipped it, or
+     * nothing for a cancellation. Returns what completes the future of an earlier {@link #result()} call, to be
+     * run off the scheduler's path, or {@code null} when there is no such future or the outcome is already set.
+     */
+    Runnable settle(TaskState terminalState, Object value) {
+        CompletableFuture<T> future;
+        synchronized (this) {
+            if (outcome != null) {
+                return null;
+            }
+            outcome = terminalState;
+            outcomeValue = value;
+            future = result;
+        }
+        return future == null ? null : () -> complete(future);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(CompletableFuture<T> future) {
+        switch (outcome) {
+            case SUCCEEDED -> future.complete((T) outcomeValue);
+            case CANCELLED -> future.cancel(false);
+            case SKIPPED -> future.completeExceptionally(skipped(name, (Throwable) outcomeValue));
+            default -> future.completeExceptionally((Throwable) outcomeValue);
+        }
     }
 
-    void cancelResult() {
-        result.cancel(false);
+    static IllegalStateException skipped(String name, Throwable ancestorFailure) {
+        return new IllegalStateException("Task '" + name + "' was skipped because an ancestor failed", ancestorFailure);
     }
 
-    private static String requireName(String name) {
+    static String requireName(String name) {
         String validated = Objects.requireNonNull(name, "name").trim();
         if (validated.isEmpty()) {
             throw new IllegalArgumentException("Task name must not be blank");
@@ -126,8 +359,9 @@ public final class TaskNode<T> {
     }
 
     @FunctionalInterface
-    interface Computation<T> {
-        T run(TaskExecutionContext context) throws Exception;
+    interface Computation<T> extends TaskPlan.Step {
+        @Override
+        T run(TreeRun run, TaskExecutionContext context) throws Exception;
     }
 
     @FunctionalInterface
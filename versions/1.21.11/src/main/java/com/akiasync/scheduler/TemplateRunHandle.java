@@ -0,0 +1,49 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.CompletionStage;
+import java.util.function.BooleanSupplier;
+
+public final class TemplateRunHandle<R> {
+    private final long treeId;
+    private final long generation;
+    private final CompletionStage<R> result;
+    private final CompletionStage<TaskTreeResult> completion;
+    private final BooleanSupplier cancellation;
+
+    TemplateRunHandle(
+            long treeId,
+            long generation,
+            CompletionStage<R> result,
+            CompletionStage<TaskTreeResult> completion,
+            BooleanSupplier cancellation
+    ) {
+        this.treeId = treeId;
+        this.generation = generation;
+        this.result = result;
+        this.completion = completion;
+        this.cancellation = cancellation;
+    }
+
+    public long treeId() {
+        return treeId;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Completes with the output node's value, or exceptionally when it fails, is skipped or is cancelled.
+     */
+    public CompletionStage<R> result() {
+        return result;
+    }
+
+    public CompletionStage<TaskTreeResult> completion() {
+        return completion;
+    }
+
+    public boolean cancel() {
+        return cancellation.getAsBoolean();
+    }
+}
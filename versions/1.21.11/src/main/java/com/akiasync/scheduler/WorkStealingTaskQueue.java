@@ -0,0 +1,162 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-worker priority deques with stealing. Levels are scanned from most to least urgent, so a worker steals
+ * urgent work from a peer before it runs less urgent work of its own.
+ */
+final class WorkStealingTaskQueue {
+    static final int COMPLETION_LEVEL = 1;
+    private static final int LEVELS = SchedulerPriority.values().length + 1;
+
+    private final ConcurrentLinkedDeque<Runnable>[][] local;
+    private final ConcurrentLinkedQueue<Runnable>[] injected;
+    private final Thread[] workers;
+    private final AtomicIntegerArray parked;
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private volatile boolean shutdown;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    WorkStealingTaskQueue(int workerCount) {
+        local = new ConcurrentLinkedDeque[workerCount][LEVELS];
+        for (ConcurrentLinkedDeque<Runnable>[] levels : local) {
+            for (int level = 0; level < LEVELS; level++) {
+                levels[level] = new ConcurrentLinkedDeque<>();
+            }
+        }
+        injected = new ConcurrentLinkedQueue[LEVELS];
+        for (int level = 0; level < LEVELS; level++) {
+            injected[level] = new ConcurrentLinkedQueue<>();
+        }
+        workers = new Thread[workerCount];
+        parked = new AtomicIntegerArray(workerCount);
+    }
+
+    static int level(SchedulerPriority priority) {
+        // CRITICAL stays ahead of result publication, which stays ahead of HIGH, matching Priority.HIGHER.
+        return priority == SchedulerPriority.CRITICAL ? 0 : priority.ordinal() + 1;
+    }
+
+    void bind(int worker, Thread thread) {
+        workers[worker] = thread;
+    }
+
+    /**
+     * Queues a task on {@code preferredWorker}'s own deque, or on the shared injection queue when the
+     * preferred worker is unknown.
+     */
+    void push(Runnable task, int level, int preferredWorker) {
+        if (shutdown) {
+            throw new IllegalStateException("Work-stealing queue is shut down");
+        }
+        if (preferredWorker >= 0 && preferredWorker < local.length) {
+            local[preferredWorker][level].addLast(task);
+        } else {
+            injected[level].offer(task);
+        }
+        queued.increment();
+        wakeIdleWorker();
+    }
+
+    /**
+     * Returns the next task for {@code worker}, parking while nothing is runnable, or {@code null} once the
+     * queue is shut down and drained.
+     */
+    Runnable take(int worker) {
+        while (true) {
+            Runnable task = poll(worker);
+            if (task != null) {
+                return task;
+            }
+            if (shutdown) {
+                return null;
+            }
+
+            parked.set(worker, 1);
+            idleWorkers.incrementAndGet();
+            try {
+                task = poll(worker);
+                if (task != null) {
+                    return task;
+                }
+                if (shutdown) {
+                    return null;
+                }
+                LockSupport.park(this);
+            } finally {
+                parked.set(worker, 0);
+                idleWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    long queuedTasks() {
+        return Math.max(0L, queued.sum());
+    }
+
+    long steals() {
+        return steals.sum();
+    }
+
+    void shutdown() {
+        shutdown = true;
+        for (Thread worker : workers) {
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    /**
+     * Returns the next task for {@code worker} without parking, or {@code null} when nothing is runnable.
+     */
+    Runnable poll(int worker) {
+        ConcurrentLinkedDeque<Runnable>[] own = local[worker];
+        for (int level = 0; level < LEVELS; level++) {
+            Runnable task = own[level].pollLast();
+            if (task == null) {
+                task = injected[level].poll();
+            }
+            if (task == null) {
+                task = steal(worker, level);
+            }
+            if (task != null) {
+                queued.decrement();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private Runnable steal(int thief, int level) {
+        int count = local.length;
+        for (int offset = 1; offset < count; offset++) {
+            Runnable task = local[(thief + offset) % count][level].pollFirst();
+            if (task != null) {
+                steals.increment();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void wakeIdleWorker() {
+        if (idleWorkers.get() == 0) {
+            return;
+        }
+        for (int worker = 0; worker < workers.length; worker++) {
+            if (parked.compareAndSet(worker, 1, 0)) {
+                LockSupport.unpark(workers[worker]);
+                return;
+            }
+        }
+    }
+}
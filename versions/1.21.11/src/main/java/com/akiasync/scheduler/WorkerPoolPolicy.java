@@ -0,0 +1,40 @@
+package com.akiasync.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how many workers an adaptive scheduler keeps active. The pool moves one worker per evaluation so a
+ * single noisy sample cannot swing it between its bounds.
+ */
+final class WorkerPoolPolicy {
+    static final long EVALUATION_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    static final long HEADROOM_TICK_NANOS = 35_000_000L;
+
+    private WorkerPoolPolicy() {
+    }
+
+    /**
+     * @param averageTickNanos smoothed server tick time, or a negative value when unknown
+     */
+    static int nextTarget(
+            int current,
+            int minWorkers,
+            int maxWorkers,
+            long queuedTasks,
+            int busyWorkers,
+            long averageTickNanos
+    ) {
+        if (averageTickNanos > TickClock.TICK_BUDGET_NANOS) {
+            // Workers compete with the server thread for cores; give them back while ticks overrun.
+            return Math.max(minWorkers, current - 1);
+        }
+        boolean headroom = averageTickNanos < 0L || averageTickNanos <= HEADROOM_TICK_NANOS;
+        if (headroom && busyWorkers >= current && queuedTasks > current) {
+            return Math.min(maxWorkers, current + 1);
+        }
+        if (queuedTasks == 0L && busyWorkers < current / 2) {
+            return Math.max(minWorkers, current - 1);
+        }
+        return Math.max(minWorkers, Math.min(maxWorkers, current));
+    }
+}
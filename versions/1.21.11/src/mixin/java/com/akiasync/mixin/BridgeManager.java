@@ -45,6 +45,14 @@ public final class BridgeManager {
         }
     }
 
+    public void beginTick(long tickId) {
+        try {
+            bridge.get().beginTick(tickId);
+        } catch (Throwable ignored) {
+            // Diagnostics must never take down the server tick.
+        }
+    }
+
     public void publishDataPack(Bridge.DataPackSnapshot snapshot) {
         try {
             bridge.get().publishDataPack(snapshot);
@@ -1,29 +1,45 @@
 package com.akiasync.scheduler;
 
+import ca.spottedleaf.concurrentutil.executor.queue.PrioritisedTaskQueue;
+import ca.spottedleaf.concurrentutil.util.Priority;
+import org.bukkit.plugin.Plugin;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class RedisTaskSchedulerTest {
     private RedisTaskScheduler scheduler;
@@ -222,6 +238,227 @@ class RedisTaskSchedulerTest {
         assertTrue(callbackThread.get().startsWith("Aki-Test-Worker-"));
     }
 
+    @Test
+    void joinRunsOnceAfterAllParentsSucceed() throws Exception {
+        scheduler = start(config(2, 16, 16));
+        CountDownLatch releaseSlowParent = new CountDownLatch(1);
+        AtomicInteger joinRuns = new AtomicInteger();
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 3);
+        TaskNode<Integer> terrain = tree.root().then("terrain", SchedulerPriority.NORMAL, (value, context) -> {
+            assertTrue(releaseSlowParent.await(2, TimeUnit.SECONDS));
+            return value * 10;
+        });
+        TaskNode<String> entities = tree.root().then("entities", SchedulerPriority.NORMAL, (value, context) -> {
+            releaseSlowParent.countDown();
+            return "e" + value;
+        });
+        TaskNode<String> merged = tree.join("merge", SchedulerPriority.HIGH, terrain, entities, (t, e, context) -> {
+            joinRuns.incrementAndGet();
+            return e + ":" + t;
+        });
+        TaskNode<Integer> afterJoin = merged.then("length", SchedulerPriority.NORMAL, (value, context) -> value.length());
+        TaskNode<List<Integer>> all = tree.joinAll(
+                "all",
+                SchedulerPriority.NORMAL,
+                List.of(tree.root(), terrain, afterJoin),
+                (values, context) -> values
+        );
+
+        TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertTrue(result.successful());
+        assertEquals(6, result.totalTasks());
+        assertEquals(1, joinRuns.get());
+        assertEquals("e3:30", merged.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 30, 5), all.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedParentSkipsJoinButNotIndependentBranches() throws Exception {
+        scheduler = start(config(2, 16, 16));
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 1);
+        TaskNode<Integer> failing = tree.root().then("failing", SchedulerPriority.NORMAL, (value, context) -> {
+            throw new IllegalStateException("expected failure");
+        });
+        TaskNode<Integer> healthy = tree.root().then("healthy", SchedulerPriority.NORMAL, (value, context) -> value);
+        TaskNode<Integer> join = tree.join("join", SchedulerPriority.NORMAL, failing, healthy, (a, b, context) -> a + b);
+        TaskNode<Integer> joinChild = join.then("join-child", SchedulerPriority.NORMAL, (value, context) -> value);
+        TaskNode<Integer> sibling = healthy.then("sibling", SchedulerPriority.NORMAL, (value, context) -> value + 1);
+
+        TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertEquals(3, result.succeededTasks());
+        assertEquals(1, result.failedTasks());
+        assertEquals(2, result.skippedTasks());
+        assertEquals(TaskState.SKIPPED, join.state());
+        assertEquals(TaskState.SKIPPED, joinChild.state());
+        assertEquals(2, sibling.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.snapshot(0).outstandingTasks());
+    }
+
+    @Test
+    void joinRejectsParentsFromAnotherTree() {
+        TaskTree<Integer> first = TaskTree.root("first", SchedulerPriority.NORMAL, context -> 1);
+        TaskTree<Integer> second = TaskTree.root("second", SchedulerPriority.NORMAL, context -> 2);
+        assertThrows(IllegalArgumentException.class, () -> first.join(
+                "join",
+                SchedulerPriority.NORMAL,
+                first.root(),
+                second.root(),
+                (a, b, context) -> a + b
+        ));
+        assertThrows(IllegalArgumentException.class, () -> first.join(
+                "join",
+                SchedulerPriority.NORMAL,
+                first.root(),
+                first.root(),
+                (a, b, context) -> a + b
+        ));
+    }
+
+    @Test
+    void workStealingSpreadsFanOutAcrossWorkers() throws Exception {
+        scheduler = start(config(4, 64, 64).withComputeMode(ComputeMode.WORK_STEALING));
+        CyclicBarrier barrier = new CyclicBarrier(4);
+        Set<String> workerNames = ConcurrentHashMap.newKeySet();
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 1);
+        for (int index = 0; index < 4; index++) {
+            tree.root().then("leaf-" + index, SchedulerPriority.NORMAL, (value, context) -> {
+                workerNames.add(Thread.currentThread().getName());
+                barrier.await(2, TimeUnit.SECONDS);
+                return value;
+            });
+        }
+
+        TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertTrue(result.successful());
+        assertEquals(5, result.succeededTasks());
+        assertEquals(4, workerNames.size());
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(ComputeMode.WORK_STEALING, snapshot.computeMode());
+        assertTrue(snapshot.stolenTasks() >= 3);
+        assertEquals(0, snapshot.outstandingTasks());
+    }
+
+    @Test
+    void workStealingHonoursPriorityLevels() throws Exception {
+        scheduler = start(config(1, 16, 16).withComputeMode(ComputeMode.WORK_STEALING));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TaskTree<Integer> blocker = TaskTree.root("blocker", SchedulerPriority.NORMAL, context -> {
+            started.countDown();
+            assertTrue(release.await(2, TimeUnit.SECONDS));
+            return 0;
+        });
+        TaskTreeHandle<Integer> blocking = scheduler.submit(blocker);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        List<CompletableFuture<TaskTreeResult>> completions = new ArrayList<>();
+        for (SchedulerPriority priority : List.of(
+                SchedulerPriority.BACKGROUND,
+                SchedulerPriority.NORMAL,
+                SchedulerPriority.CRITICAL
+        )) {
+            TaskTree<Integer> tree = TaskTree.root(priority.name(), priority, context -> {
+                order.add(priority.name());
+                return 1;
+            });
+            completions.add(scheduler.submit(tree).completion().toCompletableFuture());
+        }
+        waitForQueuedTasks(3);
+        release.countDown();
+
+        assertTrue(blocking.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        for (CompletableFuture<TaskTreeResult> completion : completions) {
+            assertTrue(completion.get(3, TimeUnit.SECONDS).successful());
+        }
+        assertEquals(List.of("CRITICAL", "NORMAL", "BACKGROUND"), order);
+    }
+
+    @Test
+    void workerCompletionAdvancesDeepChainsAndJoins() throws Exception {
+        for (ComputeMode mode : ComputeMode.values()) {
+            scheduler = start(config(4, 512, 512).withComputeMode(mode).withCompletionMode(CompletionMode.WORKER));
+            TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 0);
+            TaskNode<Integer> left = tree.root();
+            TaskNode<Integer> right = tree.root();
+            for (int depth = 0; depth < 100; depth++) {
+                left = left.then("left-" + depth, SchedulerPriority.NORMAL, (value, context) -> value + 1);
+                right = right.then("right-" + depth, SchedulerPriority.HIGH, (value, context) -> value + 2);
+            }
+            TaskNode<Integer> sum = tree.join("sum", SchedulerPriority.NORMAL, left, right, (a, b, context) -> a + b);
+
+            TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.successful(), mode.name());
+            assertEquals(202, result.succeededTasks());
+            assertEquals(300, sum.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+            SchedulerSnapshot snapshot = scheduler.snapshot(0);
+            assertEquals(0, snapshot.outstandingTasks());
+            assertEquals(0, snapshot.activeTrees());
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void workerCompletionSurvivesConcurrentTreesAndCancellation() throws Exception {
+        scheduler = start(config(4, 4_096, 64)
+                .withComputeMode(ComputeMode.WORK_STEALING)
+                .withCompletionMode(CompletionMode.WORKER));
+        List<TaskTreeHandle<Integer>> handles = new ArrayList<>();
+        for (int index = 0; index < 200; index++) {
+            TaskTree<Integer> tree = TaskTree.root("root-" + index, SchedulerPriority.NORMAL, context -> 1);
+            List<TaskNode<Integer>> leaves = new ArrayList<>();
+            for (int leaf = 0; leaf < 8; leaf++) {
+                leaves.add(tree.root().then("leaf-" + leaf, SchedulerPriority.NORMAL, (value, context) -> value));
+            }
+            tree.joinAll("sum", SchedulerPriority.NORMAL, leaves, (values, context) -> values.size());
+            handles.add(scheduler.submit(tree));
+            if (index % 3 == 0) {
+                handles.get(index).cancel();
+            }
+        }
+
+        int succeeded = 0;
+        for (TaskTreeHandle<Integer> handle : handles) {
+            TaskTreeResult result = handle.completion().toCompletableFuture().get(5, TimeUnit.SECONDS);
+            assertEquals(10, result.succeededTasks() + result.cancelledTasks());
+            if (result.successful()) {
+                succeeded++;
+            }
+        }
+        assertTrue(succeeded >= 133);
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(0, snapshot.outstandingTasks());
+        assertEquals(200, snapshot.completedTrees());
+    }
+
+    @Test
+    void workerCompletionShutdownCancelsActiveTrees() throws Exception {
+        scheduler = start(config(2, 8, 8).withCompletionMode(CompletionMode.WORKER));
+        CountDownLatch started = new CountDownLatch(1);
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> {
+            started.countDown();
+            while (!context.isCancellationRequested()) {
+                LockSupport.parkNanos(100_000L);
+            }
+            context.checkCancellation();
+            return 1;
+        });
+        tree.root().then("child", SchedulerPriority.NORMAL, (value, context) -> value);
+        TaskTreeHandle<Integer> handle = scheduler.submit(tree);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        long closeStarted = System.nanoTime();
+        scheduler.close();
+
+        assertTrue(System.nanoTime() - closeStarted < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, handle.completion().toCompletableFuture().get(1, TimeUnit.SECONDS).cancelledTasks());
+        assertEquals(SchedulerState.STOPPED, scheduler.snapshot(0).state());
+    }
+
     private static RedisTaskScheduler start(SchedulerConfig config) {
         RedisTaskScheduler scheduler = new RedisTaskScheduler("Aki-Test", config, failure -> {
             throw new AssertionError("Unexpected scheduler failure", failure);
@@ -230,6 +467,1467 @@ class RedisTaskSchedulerTest {
         return scheduler;
     }
 
+    @Test
+    void templateRunsRepeatedlyWithFreshInputs() throws Exception {
+        scheduler = start(config(4, 4_096, 16).withComputeMode(ComputeMode.WORK_STEALING));
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "input",
+                SchedulerPriority.NORMAL,
+                (input, context) -> input
+        );
+        TaskTreeTemplate.Node<Integer> doubled = builder.root().then(
+                "double",
+                SchedulerPriority.NORMAL,
+                (value, context) -> value * 2
+        );
+        TaskTreeTemplate.Node<String> label = builder.root().then(
+                "label",
+                SchedulerPriority.HIGH,
+                (value, context) -> "#" + value
+        );
+        TaskTreeTemplate<Integer, String> template = builder.build(
+                builder.join("merge", SchedulerPriority.NORMAL, doubled, label, (d, l, context) -> l + "=" + d)
+        );
+
+        List<TemplateRunHandle<String>> handles = new ArrayList<>();
+        for (int input = 0; input < 200; input++) {
+            handles.add(scheduler.submit(template, input));
+        }
+        for (int input = 0; input < handles.size(); input++) {
+            TemplateRunHandle<String> handle = handles.get(input);
+            assertEquals("#" + input + "=" + input * 2, handle.result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+            TaskTreeResult result = handle.completion().toCompletableFuture().get(1, TimeUnit.SECONDS);
+            assertTrue(result.successful());
+            assertEquals(4, result.totalTasks());
+        }
+        assertEquals(4, template.size());
+        assertEquals("merge", template.outputName());
+    }
+
+    @Test
+    void templateFailureSkipsOutputAndTemplateIsImmutable() throws Exception {
+        scheduler = start(config(2, 64, 2));
+        TaskTreeTemplate.Builder<String, Integer> builder = TaskTreeTemplate.builder(
+                "parse",
+                SchedulerPriority.NORMAL,
+                (input, context) -> Integer.parseInt(input)
+        );
+        TaskTreeTemplate.Node<Integer> output = builder.root().then(
+                "square",
+                SchedulerPriority.NORMAL,
+                (value, context) -> value * value
+        );
+        TaskTreeTemplate<String, Integer> template = builder.build(output);
+
+        assertThrows(IllegalStateException.class, () -> output.then("late", SchedulerPriority.NORMAL, (v, c) -> v));
+        assertThrows(IllegalStateException.class, () -> builder.build(output));
+        assertEquals(49, scheduler.submit(template, "7").result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+
+        TemplateRunHandle<Integer> failed = scheduler.submit(template, "not a number");
+        Throwable failure = assertThrows(
+                Exception.class,
+                () -> failed.result().toCompletableFuture().get(3, TimeUnit.SECONDS)
+        );
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        TaskTreeResult result = failed.completion().toCompletableFuture().get(1, TimeUnit.SECONDS);
+        assertEquals(1, result.failedTasks());
+        assertEquals(1, result.skippedTasks());
+
+        TaskTreeTemplate.Builder<Integer, Integer> wide = TaskTreeTemplate.builder(
+                "root",
+                SchedulerPriority.NORMAL,
+                (input, context) -> input
+        );
+        wide.root().then("a", SchedulerPriority.NORMAL, (v, c) -> v);
+        TaskTreeTemplate<Integer, Integer> tooLarge = wide.build(
+                wide.root().then("b", SchedulerPriority.NORMAL, (v, c) -> v)
+        );
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(tooLarge, 1));
+    }
+
+    @Test
+    void submitAsyncAdmitsWaitingTreesInPriorityOrder() throws Exception {
+        scheduler = start(config(2, 2, 2));
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTree<Integer> blocker = TaskTree.root("blocker", SchedulerPriority.NORMAL, context -> {
+            assertTrue(release.await(3, TimeUnit.SECONDS));
+            return 1;
+        });
+        blocker.root().then("blocker-child", SchedulerPriority.NORMAL, (value, context) -> value);
+        scheduler.submit(blocker);
+
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<TaskTreeHandle<String>>> handles = new ArrayList<>();
+        for (SchedulerPriority priority : List.of(
+                SchedulerPriority.BACKGROUND,
+                SchedulerPriority.HIGH,
+                SchedulerPriority.NORMAL
+        )) {
+            TaskTree<String> tree = TaskTree.root(priority.name(), priority, context -> {
+                admitted.add(priority.name());
+                return priority.name();
+            });
+            tree.root().then("child", SchedulerPriority.NORMAL, (value, context) -> value);
+            handles.add(scheduler.submitAsync(tree, -1L).toCompletableFuture());
+        }
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(
+                TaskTree.root("sync", SchedulerPriority.CRITICAL, context -> 1)
+        ));
+        assertEquals(3, scheduler.snapshot(0).waitingTrees());
+        assertFalse(handles.get(0).isDone());
+
+        release.countDown();
+        for (CompletableFuture<TaskTreeHandle<String>> handle : handles) {
+            TaskTreeHandle<String> admittedHandle = handle.get(3, TimeUnit.SECONDS);
+            assertTrue(admittedHandle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        }
+        assertEquals(List.of("HIGH", "NORMAL", "BACKGROUND"), admitted);
+        assertEquals(0, scheduler.snapshot(0).waitingTrees());
+    }
+
+    @Test
+    void trySubmitTimesOutAndShutdownRejectsWaiters() throws Exception {
+        scheduler = start(config(1, 1, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit(TaskTree.root("blocker", SchedulerPriority.NORMAL, context -> {
+            assertTrue(release.await(3, TimeUnit.SECONDS));
+            return 1;
+        }));
+
+        TaskTree<Integer> late = TaskTree.root("late", SchedulerPriority.HIGH, context -> 2);
+        CompletableFuture<TaskTreeHandle<Integer>> timedOut = scheduler
+                .submitAsync(late, TimeUnit.MILLISECONDS.toNanos(20))
+                .toCompletableFuture();
+        Throwable failure = assertThrows(Exception.class, () -> timedOut.get(3, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof RejectedExecutionException);
+        assertEquals(TaskState.FAILED, late.root().state());
+        assertEquals(1L, scheduler.snapshot(0).rejectedTrees());
+
+        CompletableFuture<TaskTreeHandle<Integer>> abandoned = scheduler
+                .submitAsync(TaskTree.root("abandoned", SchedulerPriority.NORMAL, context -> 3), -1L)
+                .toCompletableFuture();
+        assertEquals(1, scheduler.snapshot(0).waitingTrees());
+        release.countDown();
+        assertTrue(abandoned.get(3, TimeUnit.SECONDS).completion().toCompletableFuture()
+                .get(3, TimeUnit.SECONDS).successful());
+
+        scheduler.submit(TaskTree.root("blocker-2", SchedulerPriority.NORMAL, context -> {
+            while (true) {
+                context.checkCancellation();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }));
+        CompletableFuture<TaskTreeHandle<Integer>> pending = scheduler
+                .submitAsync(TaskTree.root("pending", SchedulerPriority.NORMAL, context -> 4), -1L)
+                .toCompletableFuture();
+        scheduler.close();
+        Throwable shutdown = assertThrows(Exception.class, () -> pending.get(3, TimeUnit.SECONDS));
+        assertTrue(shutdown.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void submitAllReservesAndReportsTheWholeBatch() throws Exception {
+        scheduler = start(config(4, 64, 8));
+        List<TaskTree<Integer>> trees = new ArrayList<>();
+        for (int index = 0; index < 20; index++) {
+            int value = index;
+            TaskTree<Integer> tree = TaskTree.root("chunk-" + index, SchedulerPriority.NORMAL, context -> value);
+            tree.root().then("analyse", SchedulerPriority.NORMAL, (parent, context) -> parent + 1);
+            trees.add(tree);
+        }
+
+        TaskBatchHandle<TaskTreeHandle<?>> batch = scheduler.submitAll(trees);
+        TaskTreeResult result = batch.completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertTrue(result.successful());
+        assertEquals(40, result.totalTasks());
+        assertEquals(20, batch.size());
+        assertEquals(batch.handles().get(0).treeId(), result.treeId());
+        for (int index = 0; index < trees.size(); index++) {
+            assertEquals(result.treeId() + index, batch.handles().get(index).treeId());
+            assertEquals(index, trees.get(index).root().result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(20L, scheduler.snapshot(0).submittedTrees());
+
+        List<TaskTree<Integer>> tooLarge = new ArrayList<>();
+        for (int index = 0; index < 65; index++) {
+            tooLarge.add(TaskTree.root("overflow-" + index, SchedulerPriority.LOW, context -> 0));
+        }
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submitAll(tooLarge));
+        assertEquals(TaskState.FAILED, tooLarge.get(0).root().state());
+        assertEquals(0, scheduler.snapshot(0).outstandingTasks());
+        assertEquals(65L, scheduler.snapshot(0).rejectedTrees());
+    }
+
+    @Test
+    void templateBatchCancellationReachesEveryRun() throws Exception {
+        scheduler = start(config(2, 64, 4));
+        CountDownLatch started = new CountDownLatch(1);
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "spin",
+                SchedulerPriority.NORMAL,
+                (input, context) -> {
+                    started.countDown();
+                    while (true) {
+                        context.checkCancellation();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                }
+        );
+        TaskTreeTemplate<Integer, Integer> template = builder.build(builder.root());
+
+        TaskBatchHandle<TemplateRunHandle<Integer>> batch = scheduler.submitAll(template, List.of(1, 2, 3, 4, 5));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        assertTrue(batch.cancel());
+        assertFalse(batch.cancel());
+
+        TaskTreeResult result = batch.completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+        assertEquals(5, result.totalTasks());
+        assertEquals(5, result.cancelledTasks());
+        for (TemplateRunHandle<Integer> run : batch.handles()) {
+            Throwable failure = assertThrows(
+                    Exception.class,
+                    () -> run.result().toCompletableFuture().get(1, TimeUnit.SECONDS)
+            );
+            assertTrue(failure instanceof CancellationException || failure.getCause() instanceof CancellationException);
+        }
+    }
+
+    @Test
+    void workerPoolPolicyBacksOffOverBudgetAndGrowsWithHeadroom() {
+        assertEquals(3, WorkerPoolPolicy.nextTarget(4, 2, 8, 100, 4, 60_000_000L));
+        assertEquals(2, WorkerPoolPolicy.nextTarget(2, 2, 8, 100, 2, 60_000_000L));
+        assertEquals(5, WorkerPoolPolicy.nextTarget(4, 2, 8, 100, 4, 20_000_000L));
+        assertEquals(5, WorkerPoolPolicy.nextTarget(4, 2, 8, 100, 4, -1L));
+        assertEquals(4, WorkerPoolPolicy.nextTarget(4, 2, 8, 100, 4, 45_000_000L));
+        assertEquals(8, WorkerPoolPolicy.nextTarget(8, 2, 8, 100, 8, 20_000_000L));
+        assertEquals(3, WorkerPoolPolicy.nextTarget(4, 2, 8, 0, 0, 20_000_000L));
+        assertEquals(4, WorkerPoolPolicy.nextTarget(4, 2, 8, 0, 3, 20_000_000L));
+    }
+
+    @Test
+    void adaptivePoolGrowsUnderBacklogAndShrinksWhenIdle() throws Exception {
+        scheduler = start(config(1, 64, 32).withAdaptiveWorkers(1, 4));
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 0);
+        for (int index = 0; index < 16; index++) {
+            tree.root().then("blocked-" + index, SchedulerPriority.NORMAL, (value, context) -> {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+                return value;
+            });
+        }
+        TaskTreeHandle<Integer> handle = scheduler.submit(tree);
+
+        awaitWorkers(4);
+        assertEquals(4, scheduler.snapshot(0).maxWorkerThreads());
+        release.countDown();
+        assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        awaitWorkers(1);
+    }
+
+    @Test
+    void adaptivePoolBacksOffWhileTicksOverrun() throws Exception {
+        TickClock tickClock = new TickClock();
+        scheduler = new RedisTaskScheduler(
+                "Aki-Test",
+                config(4, 64, 32).withAdaptiveWorkers(1, 4),
+                tickClock,
+                failure -> {
+                    throw new AssertionError("Unexpected scheduler failure", failure);
+                }
+        );
+        scheduler.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (scheduler.snapshot(0).workerThreads() > 1 && System.nanoTime() < deadline) {
+            tickClock.recordTick(70_000_000L);
+            Thread.sleep(50);
+        }
+        assertEquals(1, scheduler.snapshot(0).workerThreads());
+        assertTrue(scheduler.snapshot(0).averageTickNanos() > TickClock.TICK_BUDGET_NANOS);
+        TaskTree<Integer> tree = TaskTree.root("still-runs", SchedulerPriority.NORMAL, context -> 1);
+        assertTrue(scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+    }
+
+    @Test
+    void quietPluginOvertakesNoisyPluginBacklog() throws Exception {
+        scheduler = start(config(1, 128, 8));
+        PluginShare noisy = scheduler.share("noisy", 1, 128);
+        PluginShare quiet = scheduler.share("quiet", 1, 128);
+        CountDownLatch gate = new CountDownLatch(1);
+        TaskTree<Boolean> blocker = TaskTree.root(
+                "blocker",
+                SchedulerPriority.NORMAL,
+                context -> gate.await(5, TimeUnit.SECONDS)
+        );
+        TaskTreeHandle<Boolean> blocked = scheduler.submit(blocker, noisy);
+        waitForBusyWorker();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<TaskTreeHandle<String>> handles = new ArrayList<>();
+        for (int index = 0; index < 60; index++) {
+            String name = "noisy-" + index;
+            handles.add(scheduler.submit(TaskTree.root(name, SchedulerPriority.NORMAL, context -> {
+                order.add(name);
+                return name;
+            }), noisy));
+        }
+        waitForQueuedTasks(60);
+        handles.add(scheduler.submit(TaskTree.root("quiet", SchedulerPriority.NORMAL, context -> {
+            order.add("quiet");
+            return "quiet";
+        }), quiet));
+        waitForQueuedTasks(61);
+
+        gate.countDown();
+        assertTrue(blocked.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        for (TaskTreeHandle<String> handle : handles) {
+            assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        }
+        // Each queued noisy node pushes that plugin's virtual clock a millisecond ahead of the wall clock.
+        assertTrue(order.indexOf("quiet") < 30, "quiet plugin ran at " + order.indexOf("quiet"));
+    }
+
+    @Test
+    void submissionsWithoutAPluginShareKeepTheWholeTaskBudget() throws Exception {
+        scheduler = start(config(1, 8, 8).withMaxPluginTasks(2));
+        CountDownLatch release = new CountDownLatch(1);
+        List<TaskTreeHandle<Boolean>> handles = new ArrayList<>();
+        for (int index = 0; index < 8; index++) {
+            handles.add(scheduler.submit(TaskTree.root(
+                    "held",
+                    SchedulerPriority.NORMAL,
+                    context -> release.await(5, TimeUnit.SECONDS)
+            )));
+        }
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(
+                TaskTree.root("over", SchedulerPriority.NORMAL, context -> 1)
+        ));
+        release.countDown();
+
+        for (TaskTreeHandle<Boolean> handle : handles) {
+            assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        }
+        assertEquals(8, scheduler.snapshot(0).plugins().stream()
+                .filter(plugin -> plugin.plugin().equals("Aki-Test"))
+                .findFirst()
+                .orElseThrow()
+                .taskQuota());
+    }
+
+    @Test
+    void pluginNamedLikeTheSchedulerGetsItsOwnShare() throws Exception {
+        Plugin self = (Plugin) Proxy.newProxyInstance(
+                Plugin.class.getClassLoader(),
+                new Class<?>[] {Plugin.class},
+                (proxy, method, args) -> method.getName().equals("getName") ? "Aki-Async" : null
+        );
+        try (AkiScheduler aki = new AkiScheduler(self, config(1, 8, 8).withMaxPluginTasks(2))) {
+            aki.start();
+            PluginScheduler plugin = aki.forPlugin(self);
+            CountDownLatch release = new CountDownLatch(1);
+            List<TaskTreeHandle<Boolean>> handles = new ArrayList<>();
+            for (int index = 0; index < 6; index++) {
+                handles.add(aki.submit(TaskTree.root(
+                        "held",
+                        SchedulerPriority.NORMAL,
+                        context -> release.await(5, TimeUnit.SECONDS)
+                )));
+            }
+            for (int index = 0; index < 2; index++) {
+                handles.add(plugin.submit(TaskTree.root(
+                        "plugin",
+                        SchedulerPriority.NORMAL,
+                        context -> release.await(5, TimeUnit.SECONDS)
+                )));
+            }
+            assertThrows(RejectedExecutionException.class, () -> plugin.submit(
+                    TaskTree.root("plugin-over", SchedulerPriority.NORMAL, context -> 1)
+            ));
+            release.countDown();
+
+            for (TaskTreeHandle<Boolean> handle : handles) {
+                assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+            }
+            List<PluginShareSnapshot> shares = aki.snapshot().plugins();
+            assertEquals(2, shares.size());
+            assertEquals(8, shares.get(0).taskQuota());
+            assertEquals(6L, shares.get(0).submittedTrees());
+            assertEquals(2, plugin.snapshot().taskQuota());
+            assertEquals(2L, plugin.snapshot().submittedTrees());
+        }
+    }
+
+    @Test
+    void pluginQuotaRejectsOnlyThatPlugin() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        PluginShare limited = scheduler.share("limited", 1, 2);
+        PluginShare other = scheduler.share("other", 1, 64);
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTree<Boolean> held = TaskTree.root(
+                "held",
+                SchedulerPriority.NORMAL,
+                context -> release.await(5, TimeUnit.SECONDS)
+        );
+        held.root().then("after", SchedulerPriority.NORMAL, (value, context) -> value);
+        TaskTreeHandle<Boolean> first = scheduler.submit(held, limited);
+
+        TaskTree<Integer> overQuota = TaskTree.root("over", SchedulerPriority.NORMAL, context -> 1);
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit(overQuota, limited));
+        TaskTree<Integer> tooLarge = TaskTree.root("large", SchedulerPriority.NORMAL, context -> 1);
+        tooLarge.root().then("a", SchedulerPriority.NORMAL, (value, context) -> value);
+        tooLarge.root().then("b", SchedulerPriority.NORMAL, (value, context) -> value);
+        ExecutionException neverFits = assertThrows(
+                ExecutionException.class,
+                () -> scheduler.submitAsync(tooLarge, -1L, limited).toCompletableFuture().get(1, TimeUnit.SECONDS)
+        );
+        assertTrue(neverFits.getCause() instanceof RejectedExecutionException);
+
+        TaskTree<Integer> unaffected = TaskTree.root("other", SchedulerPriority.NORMAL, context -> 2);
+        CompletableFuture<TaskTreeHandle<Integer>> waiting = scheduler.submitAsync(
+                TaskTree.root("waits", SchedulerPriority.NORMAL, context -> 3),
+                -1L,
+                limited
+        ).toCompletableFuture();
+        assertTrue(scheduler.submit(unaffected, other).completion().toCompletableFuture()
+                .get(3, TimeUnit.SECONDS).successful());
+        assertFalse(waiting.isDone());
+
+        release.countDown();
+        assertTrue(first.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        TaskTreeHandle<Integer> admitted = waiting.get(3, TimeUnit.SECONDS);
+        assertTrue(admitted.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+
+        Map<String, PluginShareSnapshot> plugins = new HashMap<>();
+        for (PluginShareSnapshot plugin : scheduler.snapshot(0).plugins()) {
+            plugins.put(plugin.plugin(), plugin);
+        }
+        PluginShareSnapshot limitedSnapshot = plugins.get("limited");
+        assertEquals(2, limitedSnapshot.taskQuota());
+        assertEquals(0, limitedSnapshot.outstandingTasks());
+        assertEquals(2L, limitedSnapshot.submittedTrees());
+        assertEquals(2L, limitedSnapshot.rejectedTrees());
+        assertEquals(3L, limitedSnapshot.finishedTasks());
+        assertEquals(1L, plugins.get("other").completedTrees());
+        assertEquals(2L, scheduler.snapshot(0).rejectedTrees());
+    }
+
+    @Test
+    void earlierDeadlineOvertakesFairShareBacklog() throws Exception {
+        scheduler = start(config(1, 512, 8));
+        PluginShare share = scheduler.share("deadlines", 1, 512);
+        CountDownLatch gate = new CountDownLatch(1);
+        TaskTreeHandle<Boolean> blocked = scheduler.submit(TaskTree.root(
+                "blocker",
+                SchedulerPriority.NORMAL,
+                context -> gate.await(5, TimeUnit.SECONDS)
+        ), share);
+        waitForBusyWorker();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<TaskTreeHandle<String>> handles = new ArrayList<>();
+        for (int index = 0; index < 200; index++) {
+            String name = "backlog-" + index;
+            handles.add(scheduler.submit(TaskTree.root(name, SchedulerPriority.NORMAL, context -> {
+                order.add(name);
+                return name;
+            }), share));
+        }
+        TaskTree<String> urgent = TaskTree.root("urgent", SchedulerPriority.NORMAL, context -> {
+            order.add("urgent");
+            return "urgent";
+        }).deadline(TaskDeadline.after(2, TimeUnit.SECONDS));
+        urgent.root().deadline(TaskDeadline.after(150, TimeUnit.MILLISECONDS));
+        handles.add(scheduler.submit(urgent, share));
+        waitForQueuedTasks(201);
+
+        gate.countDown();
+        assertTrue(blocked.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        for (TaskTreeHandle<String> handle : handles) {
+            assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        }
+        // Backlog tags advance a millisecond per node, so the urgent node sorts near position 150 at the latest.
+        assertTrue(order.indexOf("urgent") < 180, "urgent node ran at " + order.indexOf("urgent"));
+        assertEquals(0L, scheduler.snapshot(0).deadlineMisses());
+    }
+
+    @Test
+    void missedDeadlinesCancelTheTreeEarly() throws Exception {
+        scheduler = start(config(1, 64, 8));
+        AtomicInteger ranAfterDeadline = new AtomicInteger();
+        TaskTree<Integer> running = TaskTree.root("spins", SchedulerPriority.NORMAL, context -> {
+            long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (System.nanoTime() < giveUp) {
+                context.checkCancellation();
+                Thread.onSpinWait();
+            }
+            return 1;
+        }).deadline(TaskDeadline.after(150, TimeUnit.MILLISECONDS));
+        running.root().then("child", SchedulerPriority.NORMAL, (value, context) -> {
+            ranAfterDeadline.incrementAndGet();
+            return value;
+        });
+        TaskTree<Integer> queued = TaskTree.root("queued", SchedulerPriority.NORMAL, context -> {
+            ranAfterDeadline.incrementAndGet();
+            return 2;
+        }).deadline(TaskDeadline.ticks(1));
+
+        long startedNanos = System.nanoTime();
+        TaskTreeHandle<Integer> first = scheduler.submit(running);
+        TaskTreeHandle<Integer> second = scheduler.submit(queued);
+        TaskTreeResult firstResult = first.completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+        TaskTreeResult secondResult = second.completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertTrue(System.nanoTime() - startedNanos < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, firstResult.cancelledTasks());
+        assertEquals(1, secondResult.cancelledTasks());
+        assertEquals(0, ranAfterDeadline.get());
+        assertEquals(TaskState.CANCELLED, running.root().state());
+        assertEquals(2L, scheduler.snapshot(0).deadlineMisses());
+    }
+
+    @Test
+    void tickDeadlinesAlignToTickBoundaries() throws InterruptedException {
+        TickClock tickClock = new TickClock();
+        long now = System.nanoTime();
+        assertEquals(now + 2L * TickClock.TICK_BUDGET_NANOS, tickClock.tickBoundaryNanos(2, now));
+
+        tickClock.recordTick(20_000_000L);
+        long recorded = System.nanoTime();
+        long boundary = tickClock.tickBoundaryNanos(1, recorded);
+        assertTrue(boundary - recorded > 0L && boundary - recorded <= 30_000_000L);
+        Thread.sleep(40L);
+        long later = System.nanoTime();
+        long next = tickClock.tickBoundaryNanos(1, later);
+        assertTrue(next - later > 0L && next - later <= TickClock.TICK_BUDGET_NANOS);
+        assertEquals(next + TickClock.TICK_BUDGET_NANOS, tickClock.tickBoundaryNanos(2, later));
+    }
+
+    @Test
+    void lowPriorityWorkWaitsOutSlowTicks() throws Exception {
+        TickClock tickClock = new TickClock();
+        scheduler = new RedisTaskScheduler(
+                "Aki-Test",
+                config(2, 64, 8).withLowPriorityTickBudget(5),
+                tickClock,
+                failure -> {
+                    throw new AssertionError("Unexpected scheduler failure", failure);
+                }
+        );
+        scheduler.start();
+        tickClock.tickStarted();
+        Thread.sleep(10L);
+
+        TaskTreeHandle<Integer> background = scheduler.submit(
+                TaskTree.root("background", SchedulerPriority.BACKGROUND, context -> 1)
+        );
+        TaskTreeHandle<Integer> normal = scheduler.submit(
+                TaskTree.root("normal", SchedulerPriority.NORMAL, context -> 2)
+        );
+        assertTrue(normal.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        Thread.sleep(50L);
+        assertFalse(background.completion().toCompletableFuture().isDone());
+        assertEquals(1, scheduler.snapshot(0).deferredTasks());
+
+        tickClock.recordTick(TimeUnit.MILLISECONDS.toNanos(80));
+        assertTrue(background.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(0, snapshot.deferredTasks());
+        assertEquals(1L, snapshot.throttledTasks());
+    }
+
+    @Test
+    void queuedBackgroundWorkAgesAheadOfNewerUrgentWork() throws Exception {
+        scheduler = start(config(1, 64, 8).withPriorityAging(20));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        TaskTreeHandle<Integer> blocker = scheduler.submit(
+                TaskTree.root("blocker", SchedulerPriority.CRITICAL, context -> {
+                    release.await(2, TimeUnit.SECONDS);
+                    return 0;
+                })
+        );
+        waitForBusyWorker();
+        TaskTreeHandle<Integer> background = scheduler.submit(
+                TaskTree.root("background", SchedulerPriority.BACKGROUND, context -> {
+                    order.add("background");
+                    return 1;
+                })
+        );
+        waitUntil(() -> scheduler.snapshot(0).agedTasks() >= 3, "background node aged up to HIGH");
+
+        List<TaskTreeHandle<Integer>> urgent = new ArrayList<>();
+        for (int index = 0; index < 4; index++) {
+            urgent.add(scheduler.submit(TaskTree.root("urgent", SchedulerPriority.HIGH, context -> {
+                order.add("urgent");
+                return 2;
+            })));
+        }
+        release.countDown();
+
+        assertTrue(blocker.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertTrue(background.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        for (TaskTreeHandle<Integer> handle : urgent) {
+            assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        }
+        assertEquals("background", order.get(0));
+        assertEquals(3L, scheduler.snapshot(0).agedTasks());
+    }
+
+    @Test
+    void agedCopiesEscapeTheLowPriorityThrottleInWorkStealingMode() throws Exception {
+        TickClock tickClock = new TickClock();
+        scheduler = new RedisTaskScheduler(
+                "Aki-Test",
+                config(1, 64, 8)
+                        .withComputeMode(ComputeMode.WORK_STEALING)
+                        .withPriorityAging(20)
+                        .withLowPriorityTickBudget(5),
+                tickClock,
+                failure -> {
+                    throw new AssertionError("Unexpected scheduler failure", failure);
+                }
+        );
+        scheduler.start();
+        tickClock.tickStarted();
+        Thread.sleep(10L);
+
+        TaskTreeHandle<Integer> background = scheduler.submit(
+                TaskTree.root("background", SchedulerPriority.BACKGROUND, context -> 1)
+        );
+
+        // The slow tick never ends: only the copy aged up to NORMAL may run, and it must not be parked again.
+        assertTrue(background.completion().toCompletableFuture().get(800, TimeUnit.MILLISECONDS).successful());
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertTrue(snapshot.agedTasks() >= 2L);
+        assertTrue(snapshot.throttledTasks() >= 1L);
+        tickClock.recordTick(TimeUnit.MILLISECONDS.toNanos(80));
+        waitUntil(() -> scheduler.snapshot(0).deferredTasks() == 0, "parked copies to be released");
+    }
+
+    @Test
+    void latencyHistogramPercentilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1_000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+        assertEquals(1_000L, snapshot.count());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1_000), snapshot.maxNanos());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(500), snapshot.p50Nanos());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(950), snapshot.p95Nanos());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(990), snapshot.p99Nanos());
+        assertEquals(new LatencySnapshot(0L, 0L, 0L, 0L, 0L), new LatencyHistogram().snapshot());
+    }
+
+    @Test
+    void snapshotSeparatesQueueWaitFromExecution() throws Exception {
+        scheduler = start(config(1, 64, 8));
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTree<Boolean> blocker = TaskTree.root(
+                "blocker",
+                SchedulerPriority.HIGH,
+                context -> release.await(5, TimeUnit.SECONDS)
+        );
+        TaskTreeHandle<Boolean> blocked = scheduler.submit(blocker);
+        waitForBusyWorker();
+        TaskTree<Integer> waiting = TaskTree.root("waits", SchedulerPriority.LOW, context -> 1);
+        TaskTreeHandle<Integer> queued = scheduler.submit(waiting);
+        waitForQueuedTasks(1);
+        Thread.sleep(30L);
+        release.countDown();
+        assertTrue(blocked.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertTrue(queued.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        LatencyBreakdown blockerLatency = snapshot.nodeLatency().get("blocker");
+        LatencyBreakdown waitingLatency = snapshot.nodeLatency().get("waits");
+        assertTrue(blockerLatency.execution().maxNanos() >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(waitingLatency.queueWait().maxNanos() >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(waitingLatency.execution().maxNanos() < TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(1L, waitingLatency.commit().count());
+        assertEquals(1L, snapshot.priorityLatency().get(SchedulerPriority.LOW).execution().count());
+        assertEquals(0L, snapshot.priorityLatency().get(SchedulerPriority.BACKGROUND).execution().count());
+    }
+
+    @Test
+    void identicalKeyedNodesShareOneExecutionAndCacheTheResult() throws Exception {
+        scheduler = start(config(2, 64, 8).withResultCacheSize(8));
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTreeHandle<Integer> owner = scheduler.submit(heightmapTree(1L, executions, release));
+        waitUntil(() -> executions.get() == 1, "the owner to start");
+        TaskTreeHandle<Integer> follower = scheduler.submit(heightmapTree(1L, executions, release));
+        waitUntil(() -> scheduler.snapshot(0).sharedExecutions() == 1L, "the follower to join");
+        release.countDown();
+
+        assertEquals(64, owner.root().result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(64, follower.root().result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+
+        TaskTreeHandle<Integer> cached = scheduler.submit(heightmapTree(1L, executions, release));
+        assertEquals(64, cached.root().result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+        TaskTreeHandle<Integer> changed = scheduler.submit(heightmapTree(2L, executions, release));
+        assertEquals(64, changed.root().result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(1L, snapshot.cacheHits());
+        assertEquals(1L, snapshot.sharedExecutions());
+        assertEquals(1, snapshot.cachedResults());
+    }
+
+    @Test
+    void templateNodesTakeRetryCacheKeyAndTimeoutOptions() throws Exception {
+        scheduler = start(config(2, 64, 8).withResultCacheSize(8));
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger executions = new AtomicInteger();
+        TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                "flaky",
+                SchedulerPriority.NORMAL,
+                (input, context) -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("first attempt fails");
+                    }
+                    return input;
+                }
+        );
+        builder.root().retry(RetryPolicy.attempts(2)).timeout(1, TimeUnit.SECONDS);
+        TaskTreeTemplate.Node<Integer> squared = builder.root()
+                .then("squared", SchedulerPriority.NORMAL, (value, context) -> {
+                    executions.incrementAndGet();
+                    return value * value;
+                })
+                .<Integer>cacheKey(input -> "square " + input, input -> 1L);
+        TaskTreeTemplate<Integer, Integer> template = builder.build(squared);
+        assertThrows(IllegalStateException.class, () -> squared.blocking());
+
+        assertEquals(49, scheduler.submit(template, 7).result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(49, scheduler.submit(template, 7).result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(64, scheduler.submit(template, 8).result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+
+        assertEquals(2, executions.get());
+        assertEquals(4, attempts.get());
+        assertEquals(1L, scheduler.snapshot(0).retriedTasks());
+        assertEquals(1L, scheduler.snapshot(0).cacheHits());
+    }
+
+    @Test
+    void followerComputesItselfWhenTheOwningTreeIsCancelled() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        TaskTreeHandle<Integer> owner = scheduler.submit(heightmapTree(1L, executions, release));
+        waitUntil(() -> executions.get() == 1, "the owner to start");
+        TaskTreeHandle<Integer> follower = scheduler.submit(heightmapTree(1L, executions, release));
+        waitUntil(() -> scheduler.snapshot(0).sharedExecutions() == 1L, "the follower to join");
+        assertTrue(owner.cancel());
+        assertEquals(1, owner.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).cancelledTasks());
+        waitUntil(() -> executions.get() == 2, "the follower to run the node itself");
+        release.countDown();
+
+        assertEquals(64, follower.root().result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+        assertEquals(0, scheduler.snapshot(0).cachedResults());
+    }
+
+    @Test
+    void recursiveForksSpreadAcrossWorkers() throws Exception {
+        for (ComputeMode mode : ComputeMode.values()) {
+            scheduler = start(config(4, 256, 8).withComputeMode(mode));
+            Set<String> workerNames = ConcurrentHashMap.newKeySet();
+            TaskTree<Long> tree = TaskTree.root(
+                    "sum",
+                    SchedulerPriority.NORMAL,
+                    context -> forkedSum(context, 0, 4_096, workerNames)
+            );
+            TaskTreeHandle<Long> handle = scheduler.submit(tree);
+
+            assertEquals(4_096L * 4_095L / 2L, handle.root().result().toCompletableFuture().get(5, TimeUnit.SECONDS));
+            assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+            assertTrue(workerNames.size() > 1, mode + " ran every fork on " + workerNames);
+            assertTrue(scheduler.snapshot(0).forkedTasks() > 0L);
+            waitUntil(() -> scheduler.snapshot(0).outstandingTasks() == 0, "fork reservations to be released");
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void forksRunInlineWithoutCapacityOrIdleWorkers() throws Exception {
+        scheduler = start(config(1, 2, 2));
+        Set<String> workerNames = ConcurrentHashMap.newKeySet();
+        TaskTree<Long> tree = TaskTree.root(
+                "sum",
+                SchedulerPriority.NORMAL,
+                context -> forkedSum(context, 0, 1_024, workerNames)
+        );
+
+        TaskTreeHandle<Long> handle = scheduler.submit(tree);
+
+        assertEquals(1_024L * 1_023L / 2L, handle.root().result().toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertEquals(1, workerNames.size());
+        assertEquals(1L, scheduler.snapshot(0).forkedTasks());
+        waitUntil(() -> scheduler.snapshot(0).outstandingTasks() == 0, "fork reservations to be released");
+    }
+
+    @Test
+    void fanOutMapsInSourceOrderAndReducesAcrossWorkers() throws Exception {
+        scheduler = start(config(4, 256, 8));
+        Set<String> workerNames = ConcurrentHashMap.newKeySet();
+        TaskTree<List<Integer>> tree = TaskTree.root("positions", SchedulerPriority.NORMAL, context -> {
+            List<Integer> positions = new ArrayList<>();
+            for (int position = 0; position < 10_000; position++) {
+                positions.add(position);
+            }
+            return positions;
+        });
+        TaskNode<List<Integer>> doubled = tree.root().fanOut(
+                "double",
+                SchedulerPriority.NORMAL,
+                positions -> positions,
+                TaskNode.ADAPTIVE_CHUNKS,
+                (position, context) -> {
+                    workerNames.add(Thread.currentThread().getName());
+                    if (position % 100 == 0) {
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                    }
+                    return position * 2;
+                }
+        );
+        TaskNode<Long> sum = doubled.reduce(
+                "sum",
+                SchedulerPriority.NORMAL,
+                values -> values,
+                512,
+                0L,
+                (partial, value) -> partial + value,
+                Long::sum
+        );
+
+        scheduler.submit(tree);
+
+        List<Integer> values = doubled.result().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(10_000, values.size());
+        for (int index = 0; index < values.size(); index++) {
+            assertEquals(index * 2, values.get(index));
+        }
+        assertEquals(10_000L * 9_999L, sum.result().toCompletableFuture().get(5, TimeUnit.SECONDS));
+        assertTrue(workerNames.size() > 1, "fan-out ran only on " + workerNames);
+    }
+
+    @Test
+    void templateReduceCombinesChunksInSourceOrder() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        TaskTreeTemplate.Builder<String, List<String>> builder = TaskTreeTemplate.builder(
+                "letters",
+                SchedulerPriority.NORMAL,
+                (input, context) -> List.of(input.split(""))
+        );
+        TaskTreeTemplate<String, String> template = builder.build(builder.root().reduce(
+                "concat",
+                SchedulerPriority.NORMAL,
+                letters -> letters,
+                3,
+                "",
+                String::concat,
+                String::concat
+        ));
+
+        for (int run = 0; run < 3; run++) {
+            TemplateRunHandle<String> handle = scheduler.submit(template, "abcdefghijklmnopqrstuvwxyz");
+            assertEquals("abcdefghijklmnopqrstuvwxyz", handle.result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+        }
+        TemplateRunHandle<String> empty = scheduler.submit(template, "");
+        assertEquals("", empty.result().toCompletableFuture().get(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void pipelineCommitsOnTheOwnerAndDiscardsStaleSnapshots() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        ExecutorService ownerThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "owner"));
+        try {
+            Map<String, Integer> world = new ConcurrentHashMap<>(Map.of("a", 3, "b", 5));
+            List<String> stageThreads = Collections.synchronizedList(new ArrayList<>());
+            TaskTreeTemplate.Builder<Integer, Integer> builder = TaskTreeTemplate.builder(
+                    "square",
+                    SchedulerPriority.NORMAL,
+                    (value, context) -> value * value
+            );
+            TaskPipeline<String, Integer> pipeline = TaskPipeline.builder("squares", (String key) -> {
+                stageThreads.add(Thread.currentThread().getName());
+                return world.get(key);
+            }).compute(builder.build(builder.root())).verify(world::containsValue).commit((snapshot, squared) -> {
+                stageThreads.add(Thread.currentThread().getName());
+                return squared;
+            });
+            TaskPipeline.Owner owner = stage -> CompletableFuture.supplyAsync(stage, ownerThread);
+
+            for (int run = 0; run < 3; run++) {
+                assertEquals(9, pipeline.run("a", scheduler, owner, () -> true).get(3, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of("owner"), stageThreads.stream().distinct().toList());
+            CompletableFuture<Integer> gone = pipeline.run("b", scheduler, owner, () -> false);
+            ExecutionException targetGone = assertThrows(ExecutionException.class, () -> gone.get(3, TimeUnit.SECONDS));
+            assertTrue(targetGone.getCause() instanceof CancellationException, targetGone.toString());
+            AtomicInteger ownerHops = new AtomicInteger();
+            CompletableFuture<Integer> stale = pipeline.run("b", scheduler, stage -> {
+                if (ownerHops.incrementAndGet() == 2) {
+                    // Change live state between the computation and the commit.
+                    world.put("b", 6);
+                }
+                return CompletableFuture.supplyAsync(stage, ownerThread);
+            }, () -> true);
+            ExecutionException changed = assertThrows(ExecutionException.class, () -> stale.get(3, TimeUnit.SECONDS));
+            assertTrue(changed.getCause() instanceof CancellationException, changed.toString());
+
+            PipelineStats stats = pipeline.stats();
+            assertEquals(5, stats.submittedRuns());
+            assertEquals(3, stats.committedRuns());
+            assertEquals(2, stats.discardedRuns());
+            assertEquals(0, stats.failedRuns());
+            assertEquals(5, stats.snapshot().count());
+            assertEquals(5, stats.compute().count());
+            assertEquals(3, stats.commit().count());
+        } finally {
+            ownerThread.shutdownNow();
+        }
+    }
+
+    @Test
+    void dispatchAllocatesOnlyQueueEntriesPerNode() throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation counters are unavailable");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long sharedQueueEntry = sharedQueueEntryBytes(threads);
+        for (ComputeMode computeMode : ComputeMode.values()) {
+            boolean shared = computeMode == ComputeMode.SHARED_QUEUE;
+            for (CompletionMode completionMode : CompletionMode.values()) {
+                scheduler = start(config(2, 4_096, 512)
+                        .withComputeMode(computeMode)
+                        .withCompletionMode(completionMode));
+                TaskTreeTemplate.Builder<Object, Object> builder = TaskTreeTemplate.builder(
+                        "root",
+                        SchedulerPriority.NORMAL,
+                        (input, context) -> input
+                );
+                for (int leaf = 0; leaf < 255; leaf++) {
+                    builder.root().then("leaf", SchedulerPriority.NORMAL, (value, context) -> value);
+                }
+                TaskTreeTemplate<Object, Object> template = builder.build(builder.root());
+                Object input = new Object();
+                for (int warmup = 0; warmup < 200; warmup++) {
+                    scheduler.submit(template, input).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+                }
+
+                // The shared queue is filled by the coordinator when it completes nodes, so it is measured too.
+                String measured = shared ? "Aki-Test-" : "Aki-Test-Worker-";
+                long[] threadIds = Thread.getAllStackTraces().keySet().stream()
+                        .filter(thread -> thread.getName().startsWith(measured))
+                        .mapToLong(Thread::threadId)
+                        .toArray();
+                int trees = 200;
+                long before = Arrays.stream(threads.getThreadAllocatedBytes(threadIds)).sum();
+                for (int tree = 0; tree < trees; tree++) {
+                    scheduler.submit(template, input).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+                }
+                long allocated = Arrays.stream(threads.getThreadAllocatedBytes(threadIds)).sum() - before;
+                long perNode = allocated / (trees * 256L);
+                // One queue entry per node, and in the shared queue the coordinator's link for its outcome, plus
+                // per-tree bookkeeping; contexts and messages are reused.
+                long bound = shared ? sharedQueueEntry + 40L : 48L;
+                assertTrue(
+                        perNode <= bound,
+                        computeMode + "/" + completionMode + " allocated " + perNode + " bytes per node, bound " + bound
+                );
+                scheduler.close();
+            }
+        }
+    }
+
+    /**
+     * Bytes the shared compute queue allocates to queue and run one task, whatever concurrentutil version is used.
+     */
+    private static long sharedQueueEntryBytes(com.sun.management.ThreadMXBean threads) {
+        PrioritisedTaskQueue queue = new PrioritisedTaskQueue(new AtomicLong(), 0L, ignored -> { });
+        Runnable task = () -> { };
+        int entries = 20_000;
+        long before = 0L;
+        for (int round = 0; round < 2; round++) {
+            // The first round warms the queue up; only the second is counted.
+            before = threads.getCurrentThreadAllocatedBytes();
+            for (int index = 0; index < entries; index++) {
+                queue.createTask(task, Priority.NORMAL, index).queue();
+            }
+            for (int index = 0; index < entries; index++) {
+                queue.executeTask();
+            }
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / entries;
+    }
+
+    @Test
+    void resultsRequestedAfterCompletionReplayTheRecordedOutcome() throws Exception {
+        scheduler = start(config(2, 16, 16));
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 2);
+        TaskNode<Integer> doubled = tree.root().then("double", SchedulerPriority.NORMAL, (value, context) -> value * 2);
+        TaskNode<Integer> broken = doubled.then("broken", SchedulerPriority.NORMAL, (value, context) -> {
+            throw new IllegalArgumentException("boom");
+        });
+        TaskNode<Integer> skipped = broken.then("after", SchedulerPriority.NORMAL, (value, context) -> value);
+
+        TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertEquals(1, result.failedTasks());
+        assertEquals(1, result.skippedTasks());
+        assertEquals(4, doubled.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        ExecutionException failure = assertThrows(
+                ExecutionException.class,
+                () -> broken.result().toCompletableFuture().get(1, TimeUnit.SECONDS)
+        );
+        assertTrue(failure.getCause() instanceof IllegalArgumentException, failure.toString());
+        ExecutionException skip = assertThrows(
+                ExecutionException.class,
+                () -> skipped.result().toCompletableFuture().get(1, TimeUnit.SECONDS)
+        );
+        assertTrue(skip.getCause() instanceof IllegalStateException, skip.toString());
+        assertTrue(skip.getCause().getCause() instanceof IllegalArgumentException, skip.toString());
+    }
+
+    @Test
+    void blockingNodesRunOnTheIoLaneWithoutHoldingComputeWorkers() throws Exception {
+        scheduler = start(config(1, 64, 8).withMaxBlockingTasks(2));
+        CountDownLatch blockingStarted = new CountDownLatch(2);
+        CountDownLatch computed = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 1);
+        List<TaskNode<Integer>> reads = new ArrayList<>();
+        for (int index = 0; index < 3; index++) {
+            reads.add(tree.root().then("read", SchedulerPriority.NORMAL, (value, context) -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                threads.add(Thread.currentThread().getName());
+                try {
+                    // Stands in for I/O that only completes after the compute sibling ran on the single worker.
+                    blockingStarted.countDown();
+                    assertTrue(computed.await(2, TimeUnit.SECONDS));
+                    return value;
+                } finally {
+                    running.decrementAndGet();
+                }
+            }).blocking());
+        }
+        TaskNode<Integer> compute = tree.root().then("compute", SchedulerPriority.NORMAL, (value, context) -> {
+            assertTrue(blockingStarted.await(2, TimeUnit.SECONDS));
+            computed.countDown();
+            return value + 1;
+        });
+
+        TaskTreeHandle<Integer> handle = scheduler.submit(tree);
+
+        assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertEquals(2, compute.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        for (TaskNode<Integer> read : reads) {
+            assertEquals(1, read.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(2, peak.get());
+        assertEquals(3, threads.size());
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("Aki-Test-IO-"), thread);
+        }
+        waitUntil(() -> scheduler.snapshot(0).busyBlockingTasks() == 0, "blocking lane went idle");
+        assertEquals(0, scheduler.snapshot(0).queuedBlockingTasks());
+    }
+
+    @Test
+    void watchdogCancelsTheTreeOfANodeRunningPastItsTimeout() throws Exception {
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        // Tree completions are published through the workers, so one is left free.
+        scheduler = new RedisTaskScheduler("Aki-Test", config(2, 64, 8), reported::add);
+        scheduler.start();
+        AtomicBoolean release = new AtomicBoolean();
+        TaskTree<Integer> runaway = TaskTree.root("runaway", SchedulerPriority.NORMAL, context -> {
+            // Ignores cancellation the way a runaway loop would.
+            while (!release.get()) {
+                Thread.onSpinWait();
+            }
+            return 1;
+        });
+        runaway.root().timeout(50, TimeUnit.MILLISECONDS);
+        TaskTreeHandle<Integer> handle = scheduler.submit(runaway);
+
+        TaskTreeResult result = handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+        assertEquals(1, result.cancelledTasks());
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(1L, snapshot.timedOutTasks());
+        StuckTaskSnapshot stuck = snapshot.stuckTasks().get(0);
+        assertEquals(handle.treeId(), stuck.treeId());
+        assertEquals("runaway", stuck.node());
+        assertTrue(stuck.thread().startsWith("Aki-Test-Worker-"), stuck.thread());
+        assertTrue(stuck.runningNanos() > stuck.timeoutNanos());
+        assertTrue(stuck.stack().stream().anyMatch(frame -> frame.getClassName().equals(getClass().getName())));
+        assertEquals(1, reported.size());
+        assertTrue(reported.get(0) instanceof TimeoutException);
+
+        release.set(true);
+        TaskTreeHandle<Integer> next = scheduler.submit(TaskTree.root("next", SchedulerPriority.NORMAL, context -> 2));
+        assertTrue(next.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertEquals(1L, scheduler.snapshot(0).timedOutTasks());
+    }
+
+    @Test
+    void defaultConfigLeavesOptionalModesOff() {
+        SchedulerConfig defaults = SchedulerConfig.defaults();
+
+        assertFalse(defaults.adaptiveWorkers());
+        assertFalse(defaults.throttlesLowPriority());
+        assertFalse(defaults.agesPriorities());
+        assertFalse(defaults.coalesceRegionCommits());
+        assertEquals(0, defaults.resultCacheSize());
+        assertEquals(0L, defaults.commitTickBudgetNanos());
+        assertEquals(ComputeMode.SHARED_QUEUE, defaults.computeMode());
+        assertEquals(CompletionMode.COORDINATOR, defaults.completionMode());
+    }
+
+    @Test
+    void watchdogStartsWithTheFirstTreeThatHasANodeTimeout() throws Exception {
+        assertEquals(0L, SchedulerConfig.defaults().nodeTimeoutMillis());
+        scheduler = new RedisTaskScheduler("Aki-Lazy", config(2, 64, 8), failure -> {
+            throw new AssertionError("Unexpected scheduler failure", failure);
+        });
+        scheduler.start();
+        BooleanSupplier watchdogAlive = () -> Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("Aki-Lazy-Watchdog"));
+
+        TaskTree<Integer> plain = TaskTree.root("plain", SchedulerPriority.NORMAL, context -> 1);
+        assertTrue(scheduler.submit(plain).completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertFalse(watchdogAlive.getAsBoolean());
+
+        TaskTree<Integer> timed = TaskTree.root("timed", SchedulerPriority.NORMAL, context -> 2);
+        timed.root().timeout(1, TimeUnit.SECONDS);
+        assertTrue(scheduler.submit(timed).completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertTrue(watchdogAlive.getAsBoolean());
+    }
+
+    @Test
+    void retryPolicyRerunsMatchingFailuresWithBackoff() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        AtomicInteger flakyRuns = new AtomicInteger();
+        AtomicInteger brokenRuns = new AtomicInteger();
+        List<Long> startedNanos = Collections.synchronizedList(new ArrayList<>());
+        TaskTree<Integer> tree = TaskTree.root("root", SchedulerPriority.NORMAL, context -> 1);
+        TaskNode<Integer> flaky = tree.root().then("flaky", SchedulerPriority.NORMAL, (value, context) -> {
+            startedNanos.add(System.nanoTime());
+            if (flakyRuns.incrementAndGet() < 3) {
+                throw new IllegalStateException("contended");
+            }
+            return value + 1;
+        }).retry(RetryPolicy.attempts(3)
+                .backoff(20, 200, TimeUnit.MILLISECONDS)
+                .retryOn(IllegalStateException.class));
+        TaskNode<Integer> afterFlaky = flaky.then("after", SchedulerPriority.NORMAL, (value, context) -> value * 10);
+        TaskNode<Integer> broken = tree.root().<Integer>then("broken", SchedulerPriority.NORMAL, (value, context) -> {
+            brokenRuns.incrementAndGet();
+            throw new IllegalArgumentException("not transient");
+        }).retry(RetryPolicy.attempts(3).retryOn(IllegalStateException.class));
+        TaskNode<Integer> afterBroken = broken.then("skipped", SchedulerPriority.NORMAL, (value, context) -> value);
+
+        TaskTreeResult result = scheduler.submit(tree).completion().toCompletableFuture().get(3, TimeUnit.SECONDS);
+
+        assertEquals(20, afterFlaky.result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(3, flakyRuns.get());
+        assertTrue(startedNanos.get(1) - startedNanos.get(0) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(startedNanos.get(2) - startedNanos.get(1) >= TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(1, brokenRuns.get());
+        assertEquals(TaskState.FAILED, broken.state());
+        assertEquals(TaskState.SKIPPED, afterBroken.state());
+        assertEquals(1, result.failedTasks());
+        assertEquals(1, result.skippedTasks());
+        SchedulerSnapshot snapshot = scheduler.snapshot(0);
+        assertEquals(2L, snapshot.retriedTasks());
+        assertEquals(0, snapshot.outstandingTasks());
+    }
+
+    @Test
+    void retryBackoffHoldsAgainstAgedCopiesInWorkStealingMode() throws Exception {
+        scheduler = start(config(2, 64, 8).withComputeMode(ComputeMode.WORK_STEALING).withPriorityAging(20));
+        CountDownLatch release = new CountDownLatch(1);
+        List<TaskTreeHandle<Boolean>> blockers = new ArrayList<>();
+        for (int index = 0; index < 2; index++) {
+            blockers.add(scheduler.submit(TaskTree.root(
+                    "blocker",
+                    SchedulerPriority.CRITICAL,
+                    context -> release.await(2, TimeUnit.SECONDS)
+            )));
+        }
+        waitUntil(() -> scheduler.snapshot(0).busyWorkers() == 2, "both workers blocked");
+        List<Long> startedNanos = Collections.synchronizedList(new ArrayList<>());
+        TaskTree<Integer> tree = TaskTree.root("flaky", SchedulerPriority.LOW, context -> {
+            startedNanos.add(System.nanoTime());
+            if (startedNanos.size() == 1) {
+                throw new IllegalStateException("contended");
+            }
+            return 1;
+        });
+        tree.root().retry(RetryPolicy.attempts(2).backoff(150, 150, TimeUnit.MILLISECONDS));
+        TaskTreeHandle<Integer> handle = scheduler.submit(tree);
+        waitUntil(() -> scheduler.snapshot(0).agedTasks() >= 2, "flaky node aged up to HIGH");
+        release.countDown();
+
+        assertTrue(handle.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        for (TaskTreeHandle<Boolean> blocker : blockers) {
+            assertTrue(blocker.completion().toCompletableFuture().get(1, TimeUnit.SECONDS).successful());
+        }
+        assertEquals(2, startedNanos.size());
+        assertTrue(startedNanos.get(1) - startedNanos.get(0) >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertEquals(1L, scheduler.snapshot(0).retriedTasks());
+    }
+
+    @Test
+    void timingWheelFiresTimersInDueOrderAndNeverEarly() {
+        long origin = 1_000_000L;
+        long tick = TimingWheel.TICK_NANOS;
+        TimingWheel wheel = new TimingWheel(origin);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(origin + 5 * tick + 1, () -> fired.add("5ms"));
+        wheel.schedule(origin + 70 * tick, () -> fired.add("70ms"));
+        wheel.schedule(origin + 2 * tick, () -> fired.add("2ms"));
+        wheel.schedule(origin + 5_000 * tick, () -> fired.add("5s"));
+        wheel.schedule(origin + 300_000 * tick, () -> {
+            fired.add("300s");
+            throw new IllegalStateException("timer failed");
+        });
+        List<Throwable> failures = new ArrayList<>();
+
+        assertEquals(5, wheel.size());
+        assertEquals(2 * tick, wheel.nanosUntilNext(origin));
+        wheel.advance(origin + 5 * tick, failures::add);
+        assertEquals(List.of("2ms"), fired);
+        wheel.advance(origin + 6 * tick, failures::add);
+        assertEquals(List.of("2ms", "5ms"), fired);
+        wheel.advance(origin + 69 * tick, failures::add);
+        assertEquals(2, fired.size());
+        wheel.advance(origin + 4_999 * tick, failures::add);
+        assertEquals(List.of("2ms", "5ms", "70ms"), fired);
+        wheel.advance(origin + 299_999 * tick, failures::add);
+        assertEquals(List.of("2ms", "5ms", "70ms", "5s"), fired);
+        assertTrue(wheel.nanosUntilNext(origin + 299_999 * tick) <= tick);
+        wheel.advance(origin + 300_000 * tick, failures::add);
+
+        assertEquals(List.of("2ms", "5ms", "70ms", "5s", "300s"), fired);
+        assertEquals(1, failures.size());
+        assertTrue(wheel.isEmpty());
+        assertEquals(-1L, wheel.nanosUntilNext(origin + 300_000 * tick));
+    }
+
+    @Test
+    void cancelledTimersLeaveTheWheel() {
+        long origin = 1_000_000L;
+        long tick = TimingWheel.TICK_NANOS;
+        TimingWheel wheel = new TimingWheel(origin);
+        List<String> fired = new ArrayList<>();
+        TimingWheel.Timer first = wheel.schedule(origin + 3 * tick, () -> fired.add("first"));
+        wheel.schedule(origin + 3 * tick, () -> fired.add("second"));
+        TimingWheel.Timer third = wheel.schedule(origin + 3 * tick, () -> fired.add("third"));
+        TimingWheel.Timer distant = wheel.schedule(origin + 3_600_000 * tick, () -> fired.add("distant"));
+        TimingWheel.Timer fires = wheel.schedule(origin + tick, () -> fired.add("fires"));
+
+        wheel.cancel(first);
+        wheel.cancel(third);
+        wheel.cancel(distant);
+        wheel.cancel(distant);
+        assertEquals(2, wheel.size());
+        wheel.advance(origin + tick, failure -> { });
+        wheel.cancel(fires);
+        assertEquals(1, wheel.size());
+        wheel.advance(origin + 3 * tick, failure -> { });
+
+        assertEquals(List.of("fires", "second"), fired);
+        assertTrue(wheel.isEmpty());
+        assertEquals(-1L, wheel.nanosUntilNext(origin + 3 * tick));
+    }
+
+    @Test
+    void delayedLaunchesQueueBehindHighPriorityNodes() throws Exception {
+        scheduler = start(config(1, 64, 8));
+        CountDownLatch gate = new CountDownLatch(1);
+        TaskTreeHandle<Boolean> blocked = scheduler.submit(TaskTree.root(
+                "blocker",
+                SchedulerPriority.NORMAL,
+                context -> gate.await(5, TimeUnit.SECONDS)
+        ));
+        waitForBusyWorker();
+        List<String> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<String> launched = scheduler.submitDelayed(() -> {
+            order.add("launch");
+            return "launch";
+        }, 0L);
+        waitForQueuedTasks(1);
+        TaskTreeHandle<Integer> high = scheduler.submit(TaskTree.root("high", SchedulerPriority.HIGH, context -> {
+            order.add("high");
+            return 1;
+        }));
+        waitForQueuedTasks(2);
+        gate.countDown();
+
+        assertTrue(blocked.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertTrue(high.completion().toCompletableFuture().get(3, TimeUnit.SECONDS).successful());
+        assertEquals("launch", launched.get(3, TimeUnit.SECONDS));
+        assertEquals(List.of("high", "launch"), order);
+    }
+
+    @Test
+    void delayedAndPeriodicSubmissionsRunOnTheCoordinatorClock() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        long submittedAt = System.nanoTime();
+        AtomicReference<Long> delayedRanAt = new AtomicReference<>();
+        CompletableFuture<TaskTreeHandle<Integer>> delayed = scheduler.submitDelayed(
+                () -> scheduler.submit(TaskTree.root("delayed", SchedulerPriority.NORMAL, context -> {
+                    delayedRanAt.set(System.nanoTime());
+                    return 1;
+                })),
+                TimeUnit.MILLISECONDS.toNanos(30)
+        );
+        TaskTreeHandle<Integer> delayedHandle = delayed.get(2, TimeUnit.SECONDS);
+        assertEquals(1, delayedHandle.root().result().toCompletableFuture().get(1, TimeUnit.SECONDS));
+        assertTrue(delayedRanAt.get() - submittedAt >= TimeUnit.MILLISECONDS.toNanos(30));
+
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger active = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        PeriodicSubmission periodic = scheduler.submitPeriodic(
+                () -> scheduler.submit(TaskTree.root("periodic", SchedulerPriority.NORMAL, context -> {
+                    if (active.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    runs.incrementAndGet();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(25));
+                    active.decrementAndGet();
+                    return 1;
+                })).completion(),
+                0L,
+                TimeUnit.MILLISECONDS.toNanos(5)
+        );
+        waitUntil(() -> runs.get() >= 3 && periodic.skippedRuns() > 0, "periodic runs to be submitted and skipped");
+        assertTrue(periodic.cancel());
+        waitUntil(() -> active.get() == 0, "the last periodic run to finish");
+        int runsAtCancel = runs.get();
+        Thread.sleep(50L);
+
+        assertFalse(overlapped.get());
+        assertEquals(runsAtCancel, runs.get());
+        assertEquals(runsAtCancel, periodic.submittedRuns());
+        waitUntil(() -> scheduler.snapshot(0).scheduledSubmissions() == 0, "the cancelled submission to be dropped");
+
+        CompletableFuture<TaskTreeHandle<Integer>> pending = scheduler.submitDelayed(
+                () -> scheduler.submit(TaskTree.root("never", SchedulerPriority.NORMAL, context -> 1)),
+                TimeUnit.SECONDS.toNanos(30)
+        );
+        assertEquals(1, scheduler.snapshot(0).scheduledSubmissions());
+        scheduler.close();
+
+        assertThrows(CancellationException.class, () -> pending.get(1, TimeUnit.SECONDS));
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submitPeriodic(
+                () -> CompletableFuture.completedFuture(null),
+                0L,
+                TimeUnit.MILLISECONDS.toNanos(5)
+        ));
+    }
+
+    @Test
+    void pluginDelayedAndPeriodicSubmissionsCountAgainstThePluginQuota() throws Exception {
+        scheduler = start(config(2, 64, 8));
+        PluginScheduler plugin = new PluginScheduler(scheduler, scheduler.share("timers", 1, 1));
+
+        TaskTreeHandle<Integer> delayed = plugin.submitDelayed(
+                TaskTree.root("delayed", SchedulerPriority.NORMAL, context -> 1),
+                5,
+                TimeUnit.MILLISECONDS
+        ).toCompletableFuture().get(2, TimeUnit.SECONDS);
+        assertTrue(delayed.completion().toCompletableFuture().get(2, TimeUnit.SECONDS).successful());
+
+        PeriodicSubmission overQuota = plugin.submitPeriodic(() -> {
+            TaskTree<Integer> tree = TaskTree.root("wide", SchedulerPriority.NORMAL, context -> 1);
+            tree.root().then("second", SchedulerPriority.NORMAL, (value, context) -> value);
+            return tree;
+        }, 0L, 5L, TimeUnit.MILLISECONDS);
+        waitUntil(() -> overQuota.rejectedRuns() >= 2, "periodic runs to be rejected by the plugin quota");
+        overQuota.cancel();
+
+        PluginShareSnapshot snapshot = plugin.snapshot();
+        assertEquals(0L, overQuota.submittedRuns());
+        assertEquals(1L, snapshot.completedTrees());
+        assertTrue(snapshot.rejectedTrees() >= 2L);
+        assertEquals(0, snapshot.outstandingTasks());
+    }
+
+    private void waitForBusyWorker() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (scheduler.snapshot(0).busyWorkers() == 0) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for a busy worker");
+            Thread.sleep(1L);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + description);
+            Thread.sleep(1L);
+        }
+    }
+
+    private void awaitWorkers(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (scheduler.snapshot(0).workerThreads() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, scheduler.snapshot(0).workerThreads());
+    }
+
+    private void waitForQueuedTasks(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (scheduler.snapshot(0).queuedComputeTasks() < expected) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for queued compute tasks");
+            Thread.sleep(1L);
+        }
+    }
+
+    private static long forkedSum(TaskExecutionContext context, int from, int to, Set<String> workerNames)
+            throws Exception {
+        if (to - from <= 64) {
+            workerNames.add(Thread.currentThread().getName());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            long sum = 0L;
+            for (int value = from; value < to; value++) {
+                sum += value;
+            }
+            return sum;
+        }
+        int middle = (from + to) >>> 1;
+        TaskFork<Long> left = context.fork(forked -> forkedSum(forked, from, middle, workerNames));
+        long right = forkedSum(context, middle, to, workerNames);
+        return left.join() + right;
+    }
+
+    private static TaskTree<Integer> heightmapTree(long generation, AtomicInteger executions, CountDownLatch release) {
+        TaskTree<Integer> tree = TaskTree.root("heightmap", SchedulerPriority.NORMAL, context -> {
+            executions.incrementAndGet();
+            while (!release.await(1L, TimeUnit.MILLISECONDS)) {
+                context.checkCancellation();
+            }
+            return 64;
+        });
+        tree.root().cacheKey("chunk 0,0", generation);
+        return tree;
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "expected about " + expected + " but was " + actual);
+    }
+
     private static SchedulerConfig config(int workers, int capacity, int maxTreeNodes) {
         return new SchedulerConfig(workers, capacity, maxTreeNodes, 8, 8, 2_000);
     }